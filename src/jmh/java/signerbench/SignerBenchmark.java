@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.jmh/SignerBenchmark.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package signerbench;
+
+import io.github.karlatemp.publicationsign.GpgSignerWorkflow;
+import io.github.karlatemp.publicationsign.signer.ArtifactSigner;
+import io.github.karlatemp.publicationsign.signerimpl.GpgAgentSignerImpl;
+import io.github.karlatemp.publicationsign.signerimpl.GpgSignerImpl;
+import io.github.karlatemp.publicationsign.signerimpl.InProcessSignerImpl;
+import io.github.karlatemp.publicationsign.signerimpl.RemoteSignerDaemon;
+import io.github.karlatemp.publicationsign.signerimpl.RemoteSignerImpl;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput &amp; latency of {@link ArtifactSigner#doSign(Logger, File)} on synthetic artifacts.
+ * <p>
+ * Runs offline: a throwaway key without passphrase is generated like `key-gen.sh` does, and kept with the artifacts
+ * in {@code publication-sign.bench.dir} for later runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class SignerBenchmark {
+    private static final Logger LOGGER = Logging.getLogger(SignerBenchmark.class);
+
+    private static final String SKIP_VERIFY = ":skipVerify";
+
+    /**
+     * The signer type, suffixed by {@value SKIP_VERIFY} for trials of signers verifying signatures (gpg, remote)
+     * with verifying off
+     */
+    @Param({
+            GpgSignerWorkflow.SIGNER_GPG, GpgSignerWorkflow.SIGNER_GPG + SKIP_VERIFY,
+            GpgSignerWorkflow.SIGNER_GPG_AGENT, GpgSignerWorkflow.SIGNER_IN_PROCESS,
+            GpgSignerWorkflow.SIGNER_REMOTE, GpgSignerWorkflow.SIGNER_REMOTE + SKIP_VERIFY
+    })
+    public String signer;
+
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    public String artifactSize;
+
+    private ArtifactSigner artifactSigner;
+    private RemoteSignerDaemon daemon;
+    private File artifact;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File dir = new File(System.getProperty("publication-sign.bench.dir", "build/jmh-work")).getAbsoluteFile();
+        File keys = generateKeys(new File(dir, "keys"));
+        artifact = generateArtifact(new File(dir, "artifacts"), artifactSize);
+
+        boolean skipVerify = signer.endsWith(SKIP_VERIFY);
+        String signerType = skipVerify ? signer.substring(0, signer.length() - SKIP_VERIFY.length()) : signer;
+        GpgSignerWorkflow workflow = new GpgSignerWorkflow();
+        workflow.signerType = signerType;
+        workflow.workingDir = new File(dir, "wd-" + signerType);
+        workflow.keys = Arrays.asList(new File(keys, "keys.pub"), new File(keys, "keys.pri"));
+        workflow.skipVerify = skipVerify;
+        switch (signerType) {
+            case GpgSignerWorkflow.SIGNER_GPG:
+                artifactSigner = new GpgSignerImpl(workflow);
+                break;
+            case GpgSignerWorkflow.SIGNER_GPG_AGENT:
+                artifactSigner = new GpgAgentSignerImpl(workflow);
+                break;
+            case GpgSignerWorkflow.SIGNER_REMOTE:
+                // Signed by a daemon on localhost, holding the secret key
+                workflow.signerType = GpgSignerWorkflow.SIGNER_GPG_AGENT;
+                daemon = RemoteSignerDaemon.start(workflow, new InetSocketAddress("127.0.0.1", 0), null, LOGGER);
+                GpgSignerWorkflow client = new GpgSignerWorkflow();
+                client.signerType = GpgSignerWorkflow.SIGNER_REMOTE;
+                client.remoteSigner = "127.0.0.1:" + daemon.getAddress().getPort();
+                client.workingDir = new File(dir, "wd-remote-client");
+                client.keys = Collections.singletonList(new File(keys, "keys.pub"));
+                client.skipVerify = skipVerify;
+                artifactSigner = new RemoteSignerImpl(client);
+                break;
+            default:
+                artifactSigner = new InProcessSignerImpl(workflow);
+        }
+        artifactSigner.initialize(LOGGER);
+        // Import keys & start agent before measuring
+        artifactSigner.doSign(LOGGER, artifact);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        artifactSigner.close();
+        if (daemon != null) {
+            daemon.close();
+        }
+    }
+
+    @Benchmark
+    public ArtifactSigner.SignResult sign() throws Exception {
+        return artifactSigner.doSign(LOGGER, artifact);
+    }
+
+    private static File generateKeys(File dir) throws Exception {
+        if (new File(dir, "keys.pri").isFile()) return dir;
+        File homedir = new File(dir, "key-gen-workflow");
+        if (!homedir.mkdirs() && !homedir.isDirectory()) {
+            throw new IOException("Failed to create " + homedir);
+        }
+        gpg(dir, "--homedir", homedir.getPath(), "--batch", "--pinentry-mode", "loopback", "--passphrase", "",
+                "--quick-gen-key", "PublicationSign Benchmark <bench@localhost>", "rsa4096", "sign", "never");
+        gpg(dir, "--homedir", homedir.getPath(), "-a", "--export", "--output", "keys.pub");
+        gpg(dir, "--homedir", homedir.getPath(), "-a", "--export-secret-keys", "--output", "keys.pri");
+        new ProcessBuilder("gpgconf", "--homedir", homedir.getPath(), "--kill", "gpg-agent").inheritIO().start().waitFor();
+        return dir;
+    }
+
+    private static void gpg(File dir, String... args) throws Exception {
+        String[] command = new String[args.length + 1];
+        command[0] = "gpg";
+        System.arraycopy(args, 0, command, 1, args.length);
+        int exitCode = new ProcessBuilder(command).directory(dir).inheritIO().start().waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("`" + String.join(" ", command) + "` response " + exitCode);
+        }
+    }
+
+    private static File generateArtifact(File dir, String size) throws IOException {
+        long bytes = Long.parseLong(size.substring(0, size.length() - 2));
+        switch (size.substring(size.length() - 2)) {
+            case "GB":
+                bytes *= 1024;
+                // fallthrough
+            case "MB":
+                bytes *= 1024;
+                // fallthrough
+            case "KB":
+                bytes *= 1024;
+        }
+        File artifact = new File(dir, "artifact-" + size + ".bin");
+        if (artifact.length() == bytes) return artifact;
+        Files.createDirectories(dir.toPath());
+        Random random = new Random(bytes);
+        byte[] buffer = new byte[1024 * 1024];
+        try (OutputStream out = Files.newOutputStream(artifact.toPath())) {
+            for (long written = 0; written < bytes; written += buffer.length) {
+                random.nextBytes(buffer);
+                out.write(buffer, 0, (int) Math.min(buffer.length, bytes - written));
+            }
+        }
+        return artifact;
+    }
+}
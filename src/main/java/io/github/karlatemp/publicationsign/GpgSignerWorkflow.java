@@ -11,13 +11,51 @@
 
 package io.github.karlatemp.publicationsign;
 
+import io.github.karlatemp.publicationsign.signer.SignatureCache;
 import io.github.karlatemp.publicationsign.signerimpl.GpgSignerImpl;
 import org.gradle.api.Project;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 public class GpgSignerWorkflow {
+    /**
+     * Sign artifacts by running `gpg --detach-sig` for every artifact.
+     */
+    public static final String SIGNER_GPG = "gpg";
+    /**
+     * Hash artifacts in jvm and sign the hash by gpg-agent directly.
+     */
+    public static final String SIGNER_GPG_AGENT = "gpg-agent";
+    /**
+     * Sign artifacts in jvm by keys of {@link #keys}, without gpg installed.
+     */
+    public static final String SIGNER_IN_PROCESS = "in-process";
+    /**
+     * Hash artifacts in jvm and sign the hash by a signing daemon of {@link #remoteSigner}, keys are not needed on build machines.
+     *
+     * @see io.github.karlatemp.publicationsign.signerimpl.RemoteSignerDaemon
+     */
+    public static final String SIGNER_REMOTE = "remote";
+
+    /**
+     * The signer used for signing artifacts.
+     *
+     * @see #SIGNER_GPG
+     * @see #SIGNER_GPG_AGENT
+     * @see #SIGNER_IN_PROCESS
+     * @see #SIGNER_REMOTE
+     */
+    public String signerType = SIGNER_GPG;
+
+    /**
+     * The digest algorithm of signatures created without gpg command. (SHA256, SHA512, ...)
+     */
+    public String digestAlgorithm = "SHA512";
 
     /**
      * The working dir for running GPG commands.
@@ -31,6 +69,86 @@ public class GpgSignerWorkflow {
      */
     public String homedir = "gpg-homedir";
 
+    /**
+     * Where to save snapshots of the prepared homedir, restored without running `gpg --import` if keys not changed.
+     * <p>
+     * Disabled by default. Also can be specified by publication-sign.homedirSnapshotDir / PUBLICATION_SIGN_HOMEDIR_SNAPSHOT_DIR.
+     * Snapshots contain secret keys, only put them in directories as private as the keys.
+     */
+    public File homedirSnapshotDir;
+
+    /**
+     * Place the homedir (keyring, trustdb, agent sockets) on a memory-backed filesystem (`/dev/shm`) if available,
+     * deleted when signing finished. Keys are imported again for every build, unless {@link #homedirSnapshotDir} set.
+     * <p>
+     * Disabled by default. Also can be enabled by publication-sign.memoryHomedir / PUBLICATION_SIGN_MEMORY_HOMEDIR.
+     */
+    public boolean memoryHomedir = false;
+
+    /**
+     * Start the gpg-agent of the sandbox homedir before signing, and kill it when build finished.
+     */
+    public boolean manageAgent = true;
+
+    /**
+     * Name of the environment variable holding the passphrase of signing key.
+     * <p>
+     * The passphrase is preset into gpg-agent (or used by in-process signer), never written to disk or command line.
+     */
+    public String passphraseEnv;
+
+    /**
+     * File holding the passphrase of signing key. Only the first line will be used.
+     */
+    public File passphraseFile;
+
+    /**
+     * @return {@code null} if no passphrase configured
+     */
+    public char[] readPassphrase() throws IOException {
+        if (passphraseEnv != null) {
+            String passphrase = System.getenv(passphraseEnv);
+            if (passphrase != null) return passphrase.toCharArray();
+        }
+        if (passphraseFile != null) {
+            try (BufferedReader reader = Files.newBufferedReader(passphraseFile.toPath(), StandardCharsets.UTF_8)) {
+                String passphrase = reader.readLine();
+                return passphrase == null ? new char[0] : passphrase.toCharArray();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Address of the signing daemon used by {@link #SIGNER_REMOTE}, `host:port`
+     */
+    public String remoteSigner;
+
+    /**
+     * Name of the environment variable holding the token for authenticating with the signing daemon
+     */
+    public String remoteSignerTokenEnv;
+
+    /**
+     * Connections opened to the signing daemon, requests are pipelined on them
+     */
+    public int remoteConnections = 2;
+
+    /**
+     * Max count of signing requests sent but not responded
+     */
+    public int remotePipelineDepth = 16;
+
+    /**
+     * Times of resending a request after its connection broken
+     */
+    public int remoteRetries = 2;
+
+    /**
+     * Milliseconds of connecting to, and waiting for responses of the signing daemon
+     */
+    public int remoteTimeout = 60_000;
+
     /**
      * Public &amp; Private keys
      * <p>
@@ -50,6 +168,144 @@ public class GpgSignerWorkflow {
 
     public boolean skipVerify = false;
 
+    /**
+     * Milliseconds a gpg command (or a gpg-agent request) can run, killed with its child processes if exceeded.
+     * <p>
+     * &lt;= 0 for no timeout
+     */
+    public long commandTimeout = 5L * 60 * 1000;
+
+    /**
+     * Times of retrying a signature after gpg failed or timed out, with the managed gpg-agent restarted
+     */
+    public int commandRetries = 2;
+
+    /**
+     * Milliseconds waited before the first retry, doubled for later retries
+     */
+    public long commandRetryBackoff = 500;
+
+    /**
+     * Max count of artifacts signing at the same time.
+     * <p>
+     * Artifacts will be signed one by one if value &lt;= 1
+     */
+    public int parallelSigns = 1;
+
+    /**
+     * Reuse signatures of unchanged artifacts, keyed by artifact SHA-256 &amp; signing key fingerprint.
+     */
+    public boolean signatureCache = false;
+
+    /**
+     * The directory of signature cache, default `workingDir/signature-cache`
+     */
+    public File signatureCacheDir;
+
+    /**
+     * Max bytes of signature cache, &lt;= 0 for unlimited
+     */
+    public long signatureCacheMaxSize = 64L * 1024 * 1024;
+
+    /**
+     * Max milliseconds of cached signatures not used, &lt;= 0 for unlimited
+     */
+    public long signatureCacheMaxAge = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * @return {@code null} if {@link #signatureCache} disabled
+     */
+    public SignatureCache newSignatureCache() {
+        if (!signatureCache) return null;
+        File dir = signatureCacheDir;
+        if (dir == null) {
+            dir = new File(Objects.requireNonNull(workingDir, "working dir not setup"), "signature-cache");
+        }
+        return new SignatureCache(dir, signatureCacheMaxSize, signatureCacheMaxAge);
+    }
+
+    /**
+     * Checksum files written along with signatures, and published as artifacts. (md5, sha1, sha256, sha512)
+     * <p>
+     * Artifacts are read once for both signatures and checksums.
+     * <p>
+     * Must stay empty for publishing to Maven repositories (remote or `file:`): maven-publish already uploads checksums of
+     * every artifact, these files would be uploaded twice and checksummed again. Only for `publishToMavenLocal`,
+     * or publications copied to repositories by other tools.
+     */
+    public List<String> checksums = new ArrayList<>();
+
+    /**
+     * @see io.github.karlatemp.publicationsign.signer.ArtifactSigner#getConfigurationKey()
+     */
+    public String getConfigurationKey() {
+        StringBuilder key = new StringBuilder();
+        String type = signerType == null ? SIGNER_GPG : signerType;
+        key.append(type);
+        if (!type.equals(SIGNER_GPG)) {
+            key.append(" digest=").append(digestAlgorithm);
+        }
+        if (additionArguments != null) {
+            key.append(" args=").append(additionArguments);
+        }
+        if (checksums != null && !checksums.isEmpty()) {
+            key.append(" checksums=").append(checksums);
+        }
+        return key.toString();
+    }
+
+    /**
+     * The normalized configuration with absolute paths, for reusing signers across builds.
+     *
+     * @see io.github.karlatemp.publicationsign.signer.ArtifactSigner#getPoolKey()
+     */
+    public String getPoolKey() {
+        StringBuilder key = new StringBuilder(getConfigurationKey());
+        key.append(" workingDir=").append(workingDir == null ? null : workingDir.getAbsolutePath());
+        key.append(" homedir=").append(homedir);
+        key.append(" userMode=").append(isUserMode);
+        key.append(" gpg=").append(gpgCommandBinary);
+        key.append(" keys=[");
+        if (keys != null) {
+            for (File k : keys) {
+                key.append(k == null ? null : k.getAbsolutePath()).append(',');
+            }
+        }
+        key.append(']');
+        key.append(" snapshot=").append(homedirSnapshotDir);
+        key.append(" memoryHomedir=").append(memoryHomedir);
+        key.append(" agent=").append(manageAgent);
+        key.append(" passphrase=").append(passphraseEnv).append(',').append(passphraseFile);
+        key.append(" skipVerify=").append(skipVerify);
+        key.append(" command=").append(commandTimeout).append(',').append(commandRetries).append(',').append(commandRetryBackoff);
+        if (SIGNER_REMOTE.equals(signerType)) {
+            key.append(" remote=").append(remoteSigner).append(',').append(remoteSignerTokenEnv).append(',')
+                    .append(remoteConnections).append(',').append(remotePipelineDepth).append(',')
+                    .append(remoteRetries).append(',').append(remoteTimeout);
+        }
+        key.append(" parallel=").append(parallelSigns);
+        if (signatureCache) {
+            key.append(" cache=").append(signatureCacheDir).append(',')
+                    .append(signatureCacheMaxSize).append(',').append(signatureCacheMaxAge);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Size &amp; modification time of key &amp; passphrase files, changed when keys updated
+     */
+    public String getKeysStamp() {
+        StringBuilder stamp = new StringBuilder();
+        List<File> files = new ArrayList<>();
+        if (keys != null) files.addAll(keys);
+        files.add(passphraseFile);
+        for (File file : files) {
+            if (file == null) continue;
+            stamp.append(file.length()).append('@').append(file.lastModified()).append(';');
+        }
+        return stamp.toString();
+    }
+
     public void addAdditionArguments(String args) {
         if (additionArguments == null) additionArguments = new ArrayList<>();
         additionArguments.add(args);
@@ -84,7 +340,7 @@ public class GpgSignerWorkflow {
     }
 
     /// Fast setup
-    public Project declaredProject;
+    public transient Project declaredProject;
     public boolean isUserMode = false;
 
     private void assertDeclaredProjectValid() {
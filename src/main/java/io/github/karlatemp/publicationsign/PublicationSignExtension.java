@@ -13,10 +13,16 @@ package io.github.karlatemp.publicationsign;
 
 import groovy.lang.Closure;
 import io.github.karlatemp.publicationsign.signer.ArtifactSigner;
+import io.github.karlatemp.publicationsign.signer.SignListener;
+import io.github.karlatemp.publicationsign.signerimpl.GpgAgentSignerImpl;
 import io.github.karlatemp.publicationsign.signerimpl.GpgSignerImpl;
+import io.github.karlatemp.publicationsign.signerimpl.InProcessSignerImpl;
+import io.github.karlatemp.publicationsign.signerimpl.RemoteSignerImpl;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 
 public class PublicationSignExtension {
@@ -40,22 +46,92 @@ public class PublicationSignExtension {
     }
 
 
-    public ArtifactSigner newGpgSigner(Project current, Project project) throws Exception {
-        if (signerAllocator != null)
-            return signerAllocator.newGpgSigner(project);
+    /**
+     * Sign one manifest of SHA-256 digests of all artifacts per publication, instead of signing every artifact.
+     * <p>
+     * {@code null} to inherit from parent projects
+     *
+     * @see io.github.karlatemp.publicationsign.signer.SignedManifest
+     */
+    public Boolean signedManifest;
+
+    public boolean isSignedManifest(Project current) {
+        if (signedManifest != null) return signedManifest;
+        Project parent = current.getParent();
+        if (parent == null) return false;
+        PublicationSignExtension extensionParent = parent.getExtensions().findByType(PublicationSignExtension.class);
+        return extensionParent != null && extensionParent.isSignedManifest(parent);
+    }
+
+    private final List<SignListener> listeners = new ArrayList<>();
+
+    /**
+     * Listen signing of this project and sub projects
+     */
+    public void addListener(SignListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SignListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Listeners of {@code current} and parent projects
+     */
+    public List<SignListener> getListeners(Project current) {
+        List<SignListener> result = new ArrayList<>();
+        Project parent = current.getParent();
+        if (parent != null) {
+            PublicationSignExtension extensionParent = parent.getExtensions().findByType(PublicationSignExtension.class);
+            if (extensionParent != null) {
+                result.addAll(extensionParent.getListeners(parent));
+            }
+        }
+        result.addAll(listeners);
+        return result;
+    }
+
+    // Resolved signer of declaredProject, reused until the allocator changed
+    private GpgSignerAllocator resolvedAllocator;
+    private ArtifactSigner resolvedSigner;
+    // Nearest extension (self or parents) declared an allocator
+    private PublicationSignExtension allocatorOwner;
+
+    private PublicationSignExtension findAllocatorOwner(Project current) {
+        if (signerAllocator != null) return this;
+        PublicationSignExtension owner = allocatorOwner;
+        if (owner != null && owner.signerAllocator != null) return owner;
 
         Project parent = current.getParent();
         if (parent == null) return null;
 
-        PublicationSignExtension extensionParent;
-        try {
-            extensionParent = parent.getExtensions().getByType(PublicationSignExtension.class);
-        } catch (Exception ignored) {
-            return null;
+        PublicationSignExtension extensionParent = parent.getExtensions().findByType(PublicationSignExtension.class);
+        if (extensionParent == null) return null;
+        owner = extensionParent.findAllocatorOwner(parent);
+        allocatorOwner = owner;
+        return owner;
+    }
+
+    public ArtifactSigner newGpgSigner(Project current, Project project) throws Exception {
+        PublicationSignExtension owner = findAllocatorOwner(current);
+        if (owner == null) return null;
+        GpgSignerAllocator allocator = owner.signerAllocator;
+        if (project != declaredProject) {
+            return allocator.newGpgSigner(project);
+        }
+        synchronized (this) {
+            if (resolvedAllocator != allocator) {
+                resolvedSigner = allocator.newGpgSigner(project);
+                resolvedAllocator = allocator;
+            }
+            return resolvedSigner;
         }
-        return extensionParent.newGpgSigner(parent, project);
     }
 
+    /**
+     * Resolve the signer of {@code project}. Signers are allocated once per project and reused by all sign tasks.
+     */
     public ArtifactSigner newGpgSigner(Project project) throws Exception {
         return newGpgSigner(project, project);
     }
@@ -65,8 +141,25 @@ public class PublicationSignExtension {
         workflow.declaredProject = declaredProject;
         workflow.workingDir = GpgSignerImpl.getDefaultWorkdir(declaredProject);
         configure.execute(workflow);
-        GpgSignerImpl signer = new GpgSignerImpl(workflow);
+        ArtifactSigner signer = newSigner(workflow);
         signerAllocator = $ -> signer;
     }
 
+    private static ArtifactSigner newSigner(GpgSignerWorkflow workflow) {
+        String signerType = workflow.signerType;
+        if (signerType == null || signerType.equals(GpgSignerWorkflow.SIGNER_GPG)) {
+            return new GpgSignerImpl(workflow);
+        }
+        if (signerType.equals(GpgSignerWorkflow.SIGNER_GPG_AGENT)) {
+            return new GpgAgentSignerImpl(workflow);
+        }
+        if (signerType.equals(GpgSignerWorkflow.SIGNER_IN_PROCESS)) {
+            return new InProcessSignerImpl(workflow);
+        }
+        if (signerType.equals(GpgSignerWorkflow.SIGNER_REMOTE)) {
+            return new RemoteSignerImpl(workflow);
+        }
+        throw new IllegalArgumentException("Unknown signer type: " + signerType);
+    }
+
 }
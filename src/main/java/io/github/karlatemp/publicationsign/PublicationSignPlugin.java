@@ -19,8 +19,15 @@ import org.gradle.api.Task;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.publish.PublishingExtension;
 import org.gradle.api.publish.maven.MavenPublication;
+import org.gradle.api.publish.maven.tasks.AbstractPublishToMaven;
+import org.gradle.api.tasks.TaskProvider;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
 public class PublicationSignPlugin implements Plugin<Project> {
     @Override
     public void apply(@NotNull Project project) {
@@ -31,17 +38,23 @@ public class PublicationSignPlugin implements Plugin<Project> {
                 .declaredProject = project;
 
         project.getPluginManager().withPlugin("maven-publish", $0000 -> project.getExtensions().configure(PublishingExtension.class, extension -> {
-            Task signAllPublications = project.getTasks().create("signAllPublications");
-            signAllPublications.setGroup("publishing");
+            TaskProvider<Task> signAllPublications = project.getTasks().register("signAllPublications", task -> task.setGroup("publishing"));
+            // Sign tasks are realized only when required. Signatures are added to publications by realized sign tasks
+            Map<MavenPublication, TaskProvider<ArtifactSignTask>> signTasks = new HashMap<>();
 
-            extension.getPublications().all(publication -> {
-                if (publication instanceof MavenPublication) {
-                    String taskName = "signPublication" + Capitalize.capitalize(publication.getName());
-                    Task subSignTask = project.getTasks().create(taskName, ArtifactSignTask.class, publication);
-                    subSignTask.setGroup("publishing");
-                    signAllPublications.dependsOn(subSignTask);
-                }
+            extension.getPublications().withType(MavenPublication.class).all(publication -> {
+                String taskName = "signPublication" + Capitalize.capitalize(publication.getName());
+                TaskProvider<ArtifactSignTask> subSignTask = project.getTasks().register(taskName, ArtifactSignTask.class, publication);
+                subSignTask.configure(task -> task.setGroup("publishing"));
+                signAllPublications.configure(task -> task.dependsOn(subSignTask));
+                signTasks.put(publication, subSignTask);
             });
+            project.getTasks().withType(AbstractPublishToMaven.class).configureEach(publishTask -> publishTask.dependsOn(
+                    (Callable<Object>) () -> {
+                        TaskProvider<ArtifactSignTask> signTask = signTasks.get(publishTask.getPublication());
+                        return signTask == null ? Collections.emptyList() : signTask;
+                    }
+            ));
         }));
     }
 }
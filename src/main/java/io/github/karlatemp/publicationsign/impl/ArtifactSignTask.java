@@ -12,36 +12,59 @@
 package io.github.karlatemp.publicationsign.impl;
 
 import io.github.karlatemp.publicationsign.PublicationSignExtension;
+import io.github.karlatemp.publicationsign.signer.ArtifactDigests;
 import io.github.karlatemp.publicationsign.signer.ArtifactSigner;
+import io.github.karlatemp.publicationsign.signer.SignListener;
+import io.github.karlatemp.publicationsign.signer.SignedManifest;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.DomainObjectSet;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileType;
 import org.gradle.api.internal.tasks.TaskDependencyInternal;
 import org.gradle.api.internal.tasks.TaskDependencyResolveContext;
 import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.publish.PublishingExtension;
 import org.gradle.api.publish.maven.MavenArtifact;
 import org.gradle.api.publish.maven.MavenPublication;
 import org.gradle.api.publish.maven.internal.artifact.AbstractMavenArtifact;
 import org.gradle.api.publish.maven.internal.publication.DefaultMavenPublication;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputFiles;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkerExecutor;
 import org.jetbrains.annotations.Nullable;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.lang.reflect.Field;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+@CacheableTask
 public class ArtifactSignTask extends DefaultTask {
     private static Field DMP$metadataArtifacts;
     private static Field DMP$derivedArtifacts;
     private static Field DMP$mainArtifacts;
-    private final DefaultMavenPublication mp;
+    // Configuration time states, not stored by configuration cache
+    private final transient DefaultMavenPublication mp;
 
     private static void setupFields() throws Throwable {
         if (DMP$mainArtifacts == null) {
@@ -58,7 +81,71 @@ public class ArtifactSignTask extends DefaultTask {
         }
     }
 
-    private final Set<PCArtifact> signArtifacts = new HashSet<>();
+    // Signatures published by this task, some may be produced by other tasks
+    private final transient Set<PCArtifact> signArtifacts = new HashSet<>();
+    private final transient Set<PCArtifact> checksumArtifacts = new HashSet<>();
+    // Artifacts digested by the signed manifest
+    private final transient Set<AbstractMavenArtifact> manifestEntries = new LinkedHashSet<>();
+    private transient PublicationSignExtension signExtension;
+    private transient ArtifactSigner loggedSigner;
+    private transient boolean checksumsWarned;
+
+    // Execution time states
+    private final Property<SignerService> signerService = getProject().getObjects().property(SignerService.class);
+    /**
+     * Artifact file -&gt; Sign file, evaluated when stored by configuration cache
+     */
+    private final Provider<Map<File, File>> signFiles = getProject().provider(() -> {
+        Map<File, File> files = new LinkedHashMap<>();
+        for (PCArtifact artifact : signArtifacts) {
+            if (!isProducer(artifact)) continue;
+            files.put(artifact.delegate.getFile(), artifact.getFile());
+        }
+        return files;
+    });
+    /**
+     * Artifact file -&gt; Published file name, unique in the publication unlike the file names
+     */
+    private final Provider<Map<File, String>> publishedNames = getProject().provider(() -> {
+        Map<File, String> names = new HashMap<>();
+        for (PCArtifact artifact : signArtifacts) {
+            if (!isProducer(artifact)) continue;
+            names.put(artifact.delegate.getFile(), publishedName(artifact.delegate));
+        }
+        return names;
+    });
+    /**
+     * Published file name -&gt; Artifact file of the signed manifest
+     */
+    private final Provider<Map<String, File>> manifestSources = getProject().provider(() -> {
+        Map<String, File> files = new TreeMap<>();
+        for (AbstractMavenArtifact artifact : manifestEntries) {
+            files.put(publishedName(artifact), artifact.getFile());
+        }
+        return files;
+    });
+    private final FileCollection sources = getProject().files(signFiles.map(Map::keySet), manifestSources.map(Map::values));
+    /**
+     * The manifest signed instead of artifacts, {@code null} if signed manifest disabled
+     */
+    private File manifestFile;
+    private ArtifactSigner signer;
+    /**
+     * Resolved at configuration time, so inputs are snapshotted without initializing the signer
+     */
+    private String signingKeyFingerprint;
+    private SignListener[] listeners = new SignListener[0];
+    private transient boolean signerInitialized;
+
+    /**
+     * Signatures of another key must not be restored from build cache. Not a lambda, stored by configuration cache
+     */
+    private static class SigningKeyKnown implements Spec<Task> {
+        @Override
+        public boolean isSatisfiedBy(Task task) {
+            return ((ArtifactSignTask) task).signingKeyFingerprint != null;
+        }
+    }
 
     @SuppressWarnings("unchecked")
     @Inject
@@ -69,26 +156,20 @@ public class ArtifactSignTask extends DefaultTask {
             throw new UnsupportedOperationException(publication.getClass().toString());
         }
         setupFields();
+        signerService.set(SignerService.register(getProject()));
+        usesService(signerService);
+        getOutputs().cacheIf("Signing key known at configuration time", new SigningKeyKnown());
         DefaultMavenPublication mPublication = (DefaultMavenPublication) publication;
         this.mp = mPublication;
         DomainObjectSet<MavenArtifact> derived = (DomainObjectSet<MavenArtifact>) DMP$derivedArtifacts.get(mPublication);
-        TaskDependencyInternal TASK_THIS = new TaskDependencyInternal() {
-            @Override
-            public void visitDependencies(TaskDependencyResolveContext taskDependencyResolveContext) {
-                taskDependencyResolveContext.execute(ArtifactSignTask.this);
-            }
-
-            @Override
-            public Set<? extends Task> getDependencies(@Nullable Task task) {
-                return Collections.singleton(ArtifactSignTask.this);
-            }
-        };
+        TaskDependencyInternal TASK_THIS = dependencyOn(this);
 
         {
             DomainObjectSet<MavenArtifact> metadataArtifacts = (DomainObjectSet<MavenArtifact>) DMP$metadataArtifacts.get(mPublication);
             DomainObjectSet<MavenArtifact> mainArtifacts = (DomainObjectSet<MavenArtifact>) DMP$mainArtifacts.get(mPublication);
-            if (signerUnInitialized() == null) {
-                Project project = getProject();
+            Project project = getProject();
+            // Lazily registered tasks may be realized after the project evaluated
+            if (signerUnInitialized() == null && !project.getState().getExecuted()) {
                 project.afterEvaluate($$$ -> {
                     register(mainArtifacts, derived, TASK_THIS);
                     register(metadataArtifacts, derived, TASK_THIS);
@@ -102,7 +183,15 @@ public class ArtifactSignTask extends DefaultTask {
             @Override
             public void visitDependencies(TaskDependencyResolveContext taskDependencyResolveContext) {
                 for (PCArtifact artifact : signArtifacts) {
-                    taskDependencyResolveContext.add(artifact.delegate.getBuildDependencies());
+                    Task producer = SignatureProducers.producer(ArtifactSignTask.this, artifact.getFile());
+                    if (producer == ArtifactSignTask.this) {
+                        taskDependencyResolveContext.add(artifact.delegate.getBuildDependencies());
+                    } else {
+                        taskDependencyResolveContext.execute(producer);
+                    }
+                }
+                for (AbstractMavenArtifact artifact : manifestEntries) {
+                    taskDependencyResolveContext.add(artifact.getBuildDependencies());
                 }
             }
 
@@ -113,6 +202,41 @@ public class ArtifactSignTask extends DefaultTask {
         });
     }
 
+    private static TaskDependencyInternal dependencyOn(Task producer) {
+        return new TaskDependencyInternal() {
+            @Override
+            public void visitDependencies(TaskDependencyResolveContext taskDependencyResolveContext) {
+                taskDependencyResolveContext.execute(producer);
+            }
+
+            @Override
+            public Set<? extends Task> getDependencies(@Nullable Task task) {
+                return Collections.singleton(producer);
+            }
+        };
+    }
+
+    /**
+     * The producer of {@code signFile} resolved when the task graph built, all claimants registered
+     */
+    private TaskDependencyInternal producerOf(File signFile) {
+        return new TaskDependencyInternal() {
+            @Override
+            public void visitDependencies(TaskDependencyResolveContext taskDependencyResolveContext) {
+                taskDependencyResolveContext.execute(SignatureProducers.producer(ArtifactSignTask.this, signFile));
+            }
+
+            @Override
+            public Set<? extends Task> getDependencies(@Nullable Task task) {
+                return Collections.singleton(SignatureProducers.producer(ArtifactSignTask.this, signFile));
+            }
+        };
+    }
+
+    private boolean isProducer(PCArtifact sign) {
+        return SignatureProducers.producer(this, sign.getFile()) == this;
+    }
+
     private static String artifactToString(Project project, MavenArtifact artifact) {
         StringBuilder result = new StringBuilder();
         result.append(project.getName());
@@ -128,6 +252,23 @@ public class ArtifactSignTask extends DefaultTask {
         return result.toString();
     }
 
+    /**
+     * The file name of {@code artifact} in maven repositories
+     */
+    private String publishedName(MavenArtifact artifact) {
+        StringBuilder result = new StringBuilder();
+        result.append(mp.getArtifactId()).append('-').append(mp.getVersion());
+        String classifier = artifact.getClassifier();
+        if (classifier != null && !classifier.isEmpty()) {
+            result.append('-').append(classifier);
+        }
+        String extension = artifact.getExtension();
+        if (extension != null && !extension.isEmpty()) {
+            result.append('.').append(extension);
+        }
+        return result.toString();
+    }
+
     private void register(DomainObjectSet<MavenArtifact> artifacts, DomainObjectSet<MavenArtifact> derived, TaskDependencyInternal task) {
         artifacts.all(artifact -> {
             try {
@@ -139,76 +280,327 @@ public class ArtifactSignTask extends DefaultTask {
                     }
                     return;
                 }
-                PCArtifact sign = new PCArtifact(
-                        (AbstractMavenArtifact) artifact,
-                        artifactSigner.signFile(
-                                getLogger(),
-                                artifact.getFile()
-                        ),
-                        artifactSigner.getSignExt(
-                                artifact.getFile()
-                        ),
-                        task
-                );
-                derived.add(sign);
-                signArtifacts.add(sign);
+                if (signExtension.isSignedManifest(getProject())) {
+                    manifestEntries.add((AbstractMavenArtifact) artifact);
+                    if (manifestFile == null) {
+                        manifestFile = new File(getProject().getBuildDir(), "publication-sign/manifests/" + mp.getName() + ".sha256");
+                        registerSignature(artifactSigner, new ManifestArtifact(manifestFile, task), derived, task, true);
+                    }
+                    return;
+                }
+                registerSignature(artifactSigner, (AbstractMavenArtifact) artifact, derived, task, false);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         });
         artifacts.whenObjectRemoved(artifact -> {
-            Iterator<PCArtifact> artifactIterator = signArtifacts.iterator();
-            while (artifactIterator.hasNext()) {
-                PCArtifact signFile = artifactIterator.next();
-                if (signFile.delegate.equals(artifact)) {
-                    mp.removeDerivedArtifact(signFile);
-                    artifactIterator.remove();
+            for (PCArtifact sign : signArtifacts) {
+                if (sign.delegate.equals(artifact)) {
+                    SignatureProducers.release(this, sign.getFile());
                 }
             }
+            removeDerived(signArtifacts, artifact);
+            removeDerived(checksumArtifacts, artifact);
+            //noinspection SuspiciousMethodCalls
+            manifestEntries.remove(artifact);
         });
     }
 
+    /**
+     * Add the signature &amp; checksums of {@code artifact} to the publication.
+     * <p>
+     * Signatures of files attached to several publications are produced by one of the tasks publishing them,
+     * see {@link SignatureProducers}
+     *
+     * @param manifest {@code artifact} is the manifest produced by this task, also published
+     */
+    private void registerSignature(
+            ArtifactSigner artifactSigner, AbstractMavenArtifact artifact,
+            DomainObjectSet<MavenArtifact> derived, TaskDependencyInternal task, boolean manifest
+    ) {
+        File signFile = artifactSigner.signFile(getLogger(), artifact.getFile());
+        if (!manifest) {
+            SignatureProducers.claim(this, signFile);
+            task = producerOf(signFile);
+        }
+        PCArtifact sign = new PCArtifact(
+                artifact,
+                signFile,
+                artifactSigner.getSignExt(
+                        artifact.getFile()
+                ),
+                task
+        );
+        if (manifest) {
+            derived.add(artifact);
+        } else {
+            signArtifacts.add(sign);
+        }
+        derived.add(sign);
+        List<String> checksums = artifactSigner.getChecksums();
+        if (!checksums.isEmpty() && !checksumsWarned) {
+            checksumsWarned = true;
+            PublishingExtension publishing = getProject().getExtensions().findByType(PublishingExtension.class);
+            if (publishing != null && !publishing.getRepositories().isEmpty()) {
+                getLogger().warn("Checksums " + checksums + " of " + mp.getName() + " will be uploaded along with the checksums generated by maven-publish. " +
+                        "Keep `checksums` of workflow empty when publishing to Maven repositories");
+            }
+        }
+        for (String checksum : checksums) {
+            PCArtifact artifactChecksum = new PCArtifact(
+                    artifact,
+                    ArtifactDigests.checksumFile(artifact.getFile(), checksum),
+                    checksum, task
+            );
+            PCArtifact signChecksum = new PCArtifact(
+                    artifact,
+                    ArtifactDigests.checksumFile(sign.getFile(), checksum),
+                    sign.signExt + "." + checksum, task
+            );
+            derived.add(artifactChecksum);
+            derived.add(signChecksum);
+            checksumArtifacts.add(artifactChecksum);
+            checksumArtifacts.add(signChecksum);
+        }
+    }
+
+    private void removeDerived(Collection<PCArtifact> derived, MavenArtifact artifact) {
+        Iterator<PCArtifact> artifactIterator = derived.iterator();
+        while (artifactIterator.hasNext()) {
+            PCArtifact signFile = artifactIterator.next();
+            if (signFile.delegate.equals(artifact)) {
+                mp.removeDerivedArtifact(signFile);
+                artifactIterator.remove();
+            }
+        }
+    }
+
+    @Internal
+    protected Property<SignerService> getSignerService() {
+        return signerService;
+    }
+
+    @Inject
+    protected WorkerExecutor getWorkerExecutor() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * The signer resolved at configuration time, initialized for signing. Never touches {@link Project}
+     */
     protected ArtifactSigner signer() throws Exception {
-        ArtifactSigner signer = signerUnInitialized();
-        if (signer != null) signer.initialize(getProject());
+        ArtifactSigner signer = this.signer;
+        if (signer != null && !signerInitialized) {
+            getSignerService().get().initialize(signer, listeners, getLogger());
+            signerInitialized = true;
+        }
         return signer;
     }
 
+    /**
+     * Resolve the signer from {@link PublicationSignExtension}. Configuration time only
+     */
     protected ArtifactSigner signerUnInitialized() throws Exception {
-        Logger logger = getLogger();
-        PublicationSignExtension signExtension = getProject().getExtensions().getByType(PublicationSignExtension.class);
+        PublicationSignExtension signExtension = this.signExtension;
+        if (signExtension == null) {
+            signExtension = this.signExtension = getProject().getExtensions().getByType(PublicationSignExtension.class);
+        }
         ArtifactSigner signer = signExtension.newGpgSigner(getProject());
         if (signer == null) {
             return null;
         }
-        if (logger.isInfoEnabled()) {
-            logger.info("Using gpg signer: " + signer);
+        if (signer != loggedSigner) {
+            loggedSigner = signer;
+            // Resolved with the signer, instead of walking parent projects for every artifact
+            listeners = signExtension.getListeners(getProject()).toArray(new SignListener[0]);
+            if (isLegacySigner(signer)) {
+                initializeLegacy(signer);
+            } else {
+                signer.configure(getProject());
+            }
+            this.signer = signer;
+            this.signingKeyFingerprint = signer.getConfiguredSigningKeyFingerprint();
+            Logger logger = getLogger();
+            if (logger.isInfoEnabled()) {
+                logger.info("Using gpg signer: " + signer);
+            }
         }
         return signer;
     }
 
+    /**
+     * If {@code signer} still initialized by the deprecated {@link ArtifactSigner#initialize(Project)}
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean isLegacySigner(ArtifactSigner signer) {
+        try {
+            return signer.getClass().getMethod("initialize", Project.class).getDeclaringClass() != ArtifactSigner.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Initialize a legacy signer at configuration time, the only time {@link Project} available.
+     * The initialized states may not survive the configuration cache, so the task is marked incompatible (Gradle 7.4+)
+     */
+    @SuppressWarnings("deprecation")
+    private void initializeLegacy(ArtifactSigner signer) throws Exception {
+        Logger logger = getLogger();
+        if (logger.isInfoEnabled()) {
+            logger.info("Signer " + signer + " overrides deprecated initialize(Project), initializing at configuration time");
+        }
+        try {
+            Task.class.getMethod("notCompatibleWithConfigurationCache", String.class)
+                    .invoke(this, "Signer " + signer.getClass().getName() + " overrides deprecated ArtifactSigner.initialize(Project)");
+        } catch (NoSuchMethodException ignored) {
+            // Gradle 7.3
+        }
+        signer.initialize(getProject());
+    }
+
     @TaskAction
-    protected void execute() throws Throwable {
+    protected void execute(InputChanges inputChanges) throws Throwable {
+        long startedAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        int artifacts = 0;
+        try {
+            artifacts = execute0(inputChanges);
+        } finally {
+            getSignerService().get().taskExecuted(getPath(), startedAt, System.nanoTime() - start, artifacts);
+        }
+    }
+
+    /**
+     * @return Count of artifacts signed
+     */
+    private int execute0(InputChanges inputChanges) throws Throwable {
         ArtifactSigner signer = signer();
         Logger logger = getLogger();
         if (signer == null) {
             logger.error("GPG Signer not found. Skip");
-            return;
+            return 0;
         }
 
-        if (signArtifacts.isEmpty()) {
+        File manifestFile = this.manifestFile;
+        if (manifestFile != null) {
+            return signManifest(signer, logger, manifestFile);
+        }
+
+        Map<File, File> signFiles = this.signFiles.get();
+        if (signFiles.isEmpty()) {
             logger.warn("Nothing to sign");
-            return;
+            return 0;
         }
 
-        for (PCArtifact artifact : signArtifacts) {
+        List<File> artifactFiles = new ArrayList<>();
+        if (inputChanges.isIncremental()) {
+            Set<File> registered = new HashSet<>();
+            for (File artifactFile : signFiles.keySet()) {
+                registered.add(artifactFile.getAbsoluteFile());
+            }
+            for (FileChange change : inputChanges.getFileChanges(getSources())) {
+                if (change.getFileType() == FileType.DIRECTORY) continue;
+                File file = change.getFile();
+                if (change.getChangeType() == ChangeType.REMOVED) {
+                    File signFile = signer.getSignFile(file).getSignFile();
+                    if (signFile != null && signFile.delete() && logger.isInfoEnabled()) {
+                        logger.info("Deleted signature of removed artifact " + file);
+                    }
+                    for (String checksum : signer.getChecksums()) {
+                        //noinspection ResultOfMethodCallIgnored
+                        ArtifactDigests.checksumFile(file, checksum).delete();
+                        if (signFile != null) {
+                            //noinspection ResultOfMethodCallIgnored
+                            ArtifactDigests.checksumFile(signFile, checksum).delete();
+                        }
+                    }
+                } else if (registered.contains(file.getAbsoluteFile())) {
+                    artifactFiles.add(file);
+                }
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info("Incremental signing: " + artifactFiles.size() + " of " + signFiles.size() + " artifacts changed");
+            }
+        } else {
+            artifactFiles.addAll(signFiles.keySet());
+        }
+        if (artifactFiles.isEmpty()) return 0;
 
-            File artifactFile = artifact.delegate.getFile();
+        int parallelSigns = signer.getMaxParallelSigns();
+        SignerService service = getSignerService().get();
+        List<CompletableFuture<ArtifactSigner.SignResult>> results;
+        if (parallelSigns > 1 && artifactFiles.size() > 1) {
             if (logger.isInfoEnabled()) {
-                logger.info("Signing " + artifactFile);
+                logger.info("Signing " + artifactFiles.size() + " artifacts with " + parallelSigns + " parallel signs");
+            }
+            try (ArtifactSignWorkAction.SignSession session = ArtifactSignWorkAction.openSession(getWorkerExecutor().noIsolation(), parallelSigns)) {
+                results = service.signBatch(signer, listeners, logger, artifactFiles, session);
+                session.await();
+            }
+        } else {
+            results = service.signBatch(signer, listeners, logger, artifactFiles, ArtifactSignTask::signNow);
+        }
+        reportResults(logger, artifactFiles, results);
+        return artifactFiles.size();
+    }
+
+    /**
+     * Write the digests of all artifacts into the manifest, then sign the manifest only
+     *
+     * @return Count of artifacts in the manifest
+     */
+    private int signManifest(ArtifactSigner signer, Logger logger, File manifestFile) throws Throwable {
+        Map<String, File> artifactFiles = new TreeMap<>();
+        for (Map.Entry<String, File> entry : manifestSources.get().entrySet()) {
+            File artifactFile = entry.getValue();
+            if (artifactFile.isFile()) {
+                artifactFiles.put(entry.getKey(), artifactFile);
+            } else if (logger.isWarnEnabled()) {
+                logger.warn("Artifact " + artifactFile.getPath() + " not exists. Skip sign.");
             }
+        }
+        if (artifactFiles.isEmpty()) {
+            logger.warn("Nothing to sign");
+            return 0;
+        }
+        Files.createDirectories(manifestFile.getParentFile().toPath());
+        SignedManifest.of(artifactFiles).write(manifestFile);
+        List<File> manifest = Collections.singletonList(manifestFile);
+        reportResults(logger, manifest, getSignerService().get().signBatch(signer, listeners, logger, manifest, ArtifactSignTask::signNow));
+        if (logger.isInfoEnabled()) {
+            logger.info("Signed manifest of " + artifactFiles.size() + " artifacts: " + manifestFile);
+        }
+        return artifactFiles.size();
+    }
 
-            ArtifactSigner.SignResult result = signer.doSign(logger, artifactFile);
+    private static CompletableFuture<ArtifactSigner.SignResult> signNow(File artifactFile, Callable<ArtifactSigner.SignResult> signing) {
+        CompletableFuture<ArtifactSigner.SignResult> result = new CompletableFuture<>();
+        try {
+            result.complete(signing.call());
+        } catch (Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+        return result;
+    }
+
+    /**
+     * Wait for all results, then report failures of all artifacts at once
+     */
+    private static void reportResults(
+            Logger logger, List<File> artifactFiles,
+            List<CompletableFuture<ArtifactSigner.SignResult>> results
+    ) throws InterruptedException {
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < artifactFiles.size(); i++) {
+            File artifactFile = artifactFiles.get(i);
+            ArtifactSigner.SignResult result;
+            try {
+                result = results.get(i).get();
+            } catch (ExecutionException e) {
+                failures.add(new RuntimeException("Failed to sign " + artifactFile.getPath(), e.getCause()));
+                continue;
+            }
             if (result == null) {
                 if (logger.isErrorEnabled()) {
                     logger.error("Failed to sign " + artifactFile.getPath());
@@ -219,28 +611,94 @@ public class ArtifactSignTask extends DefaultTask {
                 logger.debug("Added signed artifact " + result.getSignFile());
             }
         }
+        if (failures.isEmpty()) return;
+        if (failures.size() == 1) {
+            Throwable failure = failures.get(0);
+            throw new RuntimeException(failure.getMessage(), failure.getCause());
+        }
+        StringBuilder message = new StringBuilder()
+                .append(failures.size()).append(" artifacts failed to sign:");
+        for (Throwable failure : failures) {
+            message.append("\n  - ").append(failure.getMessage());
+            Throwable cause = failure.getCause();
+            if (cause != null) {
+                message.append(": ").append(cause);
+            }
+        }
+        RuntimeException exception = new RuntimeException(message.toString());
+        for (Throwable failure : failures) {
+            exception.addSuppressed(failure);
+        }
+        throw exception;
     }
 
+    @Input
+    protected String getSignerConfiguration() {
+        ArtifactSigner signer = this.signer;
+        return signer == null ? "" : signer.getConfigurationKey();
+    }
+
+    @Input
+    protected boolean isSignedManifest() {
+        return manifestFile != null;
+    }
+
+    /**
+     * Published names of artifacts in the signed manifest, written into the manifest
+     */
+    @Input
+    protected List<String> getManifestNames() {
+        return new ArrayList<>(manifestSources.get().keySet());
+    }
+
+    @Input
+    @Optional
+    protected String getSigningKeyFingerprint() {
+        return signingKeyFingerprint;
+    }
+
+    @Incremental
     @InputFiles
-    protected Set<File> getSources() {
-        HashSet<File> src = new HashSet<>();
-        for (PCArtifact artifact : signArtifacts) {
-            File file = artifact.delegate.getFile();
-            if (file.exists()) {
-                src.add(file);
-            }
-        }
-        return src;
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    protected FileCollection getSources() {
+        return sources;
     }
 
+    /**
+     * Named by published file names, required for storing in build cache.
+     * Artifacts in different directories may share a file name, published names never collide
+     */
     @OutputFiles
-    protected Set<File> getOuts() {
-        HashSet<File> src = new HashSet<>();
-        for (PCArtifact artifact : signArtifacts) {
-            if (artifact.delegate.getFile().exists()) {
-                src.add(artifact.getFile());
+    protected Map<String, File> getOuts() {
+        Map<String, File> outs = new TreeMap<>();
+        ArtifactSigner signer = this.signer;
+        List<String> checksums = signer == null ? Collections.emptyList() : signer.getChecksums();
+        Map<File, String> publishedNames = this.publishedNames.get();
+        for (Map.Entry<File, File> entry : signFiles.get().entrySet()) {
+            File artifactFile = entry.getKey();
+            if (artifactFile.exists() && signer != null) {
+                File signFile = entry.getValue();
+                String name = publishedNames.get(artifactFile);
+                String signName = name + "." + signer.getSignExt(artifactFile);
+                outs.put(signName, signFile);
+                for (String checksum : checksums) {
+                    outs.put(name + "." + checksum, ArtifactDigests.checksumFile(artifactFile, checksum));
+                    outs.put(signName + "." + checksum, ArtifactDigests.checksumFile(signFile, checksum));
+                }
+            }
+        }
+        File manifestFile = this.manifestFile;
+        if (manifestFile != null && signer != null) {
+            File signFile = signer.getSignFile(manifestFile).getSignFile();
+            outs.put(manifestFile.getName(), manifestFile);
+            outs.put(signFile.getName(), signFile);
+            for (String checksum : checksums) {
+                File manifestChecksum = ArtifactDigests.checksumFile(manifestFile, checksum);
+                File signChecksum = ArtifactDigests.checksumFile(signFile, checksum);
+                outs.put(manifestChecksum.getName(), manifestChecksum);
+                outs.put(signChecksum.getName(), signChecksum);
             }
         }
-        return src;
+        return outs;
     }
 }
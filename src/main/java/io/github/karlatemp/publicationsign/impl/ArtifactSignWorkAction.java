@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/ArtifactSignWorkAction.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.impl;
+
+import io.github.karlatemp.publicationsign.signer.ArtifactSigner;
+import io.github.karlatemp.publicationsign.signer.SignExecutor;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkQueue;
+
+import java.io.File;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sign one artifact as a work item of {@link org.gradle.workers.WorkerExecutor}
+ * <p>
+ * Signings can't be passed by work parameters, so they are shared by a {@link SignSession}
+ */
+public abstract class ArtifactSignWorkAction implements WorkAction<ArtifactSignWorkAction.Parameters> {
+    public interface Parameters extends WorkParameters {
+        Property<String> getSession();
+
+        RegularFileProperty getArtifactFile();
+    }
+
+    private static final Map<String, SignSession> SESSIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Runs submitted signings on worker threads, at most {@code parallelSigns} at the same time
+     */
+    public static class SignSession implements SignExecutor, AutoCloseable {
+        final String id = UUID.randomUUID().toString();
+        private final WorkQueue queue;
+        private final Semaphore permits;
+        private final Map<File, Signing> pending = new ConcurrentHashMap<>();
+
+        private static class Signing {
+            final Callable<ArtifactSigner.SignResult> action;
+            final CompletableFuture<ArtifactSigner.SignResult> result = new CompletableFuture<>();
+
+            Signing(Callable<ArtifactSigner.SignResult> action) {
+                this.action = action;
+            }
+        }
+
+        SignSession(WorkQueue queue, int parallelSigns) {
+            this.queue = queue;
+            this.permits = new Semaphore(Math.max(parallelSigns, 1));
+        }
+
+        @Override
+        public CompletableFuture<ArtifactSigner.SignResult> submit(File artifactFile, Callable<ArtifactSigner.SignResult> action) {
+            Signing signing = new Signing(action);
+            if (pending.putIfAbsent(artifactFile, signing) != null) {
+                signing.result.completeExceptionally(new IllegalStateException(artifactFile + " already submitted"));
+                return signing.result;
+            }
+            queue.submit(ArtifactSignWorkAction.class, parameters -> {
+                parameters.getSession().set(id);
+                parameters.getArtifactFile().set(artifactFile);
+            });
+            return signing.result;
+        }
+
+        void sign(File artifactFile) {
+            Signing signing = pending.remove(artifactFile);
+            if (signing == null) {
+                throw new IllegalStateException("Signing of " + artifactFile + " not submitted");
+            }
+            try {
+                permits.acquire();
+                try {
+                    signing.result.complete(signing.action.call());
+                } finally {
+                    permits.release();
+                }
+            } catch (Throwable throwable) {
+                signing.result.completeExceptionally(throwable);
+            }
+        }
+
+        /**
+         * Wait for all submitted signings
+         */
+        void await() {
+            queue.await();
+        }
+
+        @Override
+        public void close() {
+            SESSIONS.remove(id);
+        }
+    }
+
+    public static SignSession openSession(WorkQueue queue, int parallelSigns) {
+        SignSession session = new SignSession(queue, parallelSigns);
+        SESSIONS.put(session.id, session);
+        return session;
+    }
+
+    @Override
+    public void execute() {
+        Parameters parameters = getParameters();
+        SignSession session = SESSIONS.get(parameters.getSession().get());
+        if (session == null) {
+            throw new IllegalStateException("Sign session " + parameters.getSession().get() + " closed");
+        }
+        session.sign(parameters.getArtifactFile().get().getAsFile());
+    }
+}
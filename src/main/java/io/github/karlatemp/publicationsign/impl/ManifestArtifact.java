@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/ManifestArtifact.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.impl;
+
+import org.gradle.api.internal.tasks.TaskDependencyInternal;
+import org.gradle.api.publish.maven.internal.artifact.AbstractMavenArtifact;
+
+import java.io.File;
+
+/**
+ * The manifest of a publication, published as {@code <artifactId>-<version>-manifest.sha256}
+ *
+ * @see io.github.karlatemp.publicationsign.signer.SignedManifest
+ */
+public class ManifestArtifact extends AbstractMavenArtifact implements Patch_g7_2_MavenArtifact {
+    static final String CLASSIFIER = "manifest";
+    static final String EXTENSION = "sha256";
+
+    private final File manifest;
+    private final TaskDependencyInternal task;
+
+    public ManifestArtifact(File manifest, TaskDependencyInternal task) {
+        this.manifest = manifest;
+        this.task = task;
+    }
+
+    @Override
+    public File getFile() {
+        return manifest;
+    }
+
+    @Override
+    protected String getDefaultExtension() {
+        return EXTENSION;
+    }
+
+    @Override
+    protected String getDefaultClassifier() {
+        return CLASSIFIER;
+    }
+
+    @Override
+    public TaskDependencyInternal getDefaultBuildDependencies() {
+        return task;
+    }
+
+    @Override
+    public boolean shouldBePublished() {
+        return true;
+    }
+}
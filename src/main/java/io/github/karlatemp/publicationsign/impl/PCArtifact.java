@@ -19,7 +19,7 @@ import java.io.File;
 public class PCArtifact extends AbstractMavenArtifact implements Patch_g7_2_MavenArtifact {
     final AbstractMavenArtifact delegate;
     private final File signFile;
-    private final String signExt;
+    final String signExt;
     private final TaskDependencyInternal task;
 
     public PCArtifact(
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignMetricsReport.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.impl;
+
+import io.github.karlatemp.publicationsign.signer.SignMetrics;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Signing metrics of one build, written as json for build-time dashboards.
+ */
+class SignMetricsReport {
+    static class TaskMetrics {
+        final String path;
+        final long startedAt;
+        final long nanos;
+        final int artifacts;
+
+        TaskMetrics(String path, long startedAt, long nanos, int artifacts) {
+            this.path = path;
+            this.startedAt = startedAt;
+            this.nanos = nanos;
+            this.artifacts = artifacts;
+        }
+    }
+
+    private final List<SignMetrics> artifacts = new ArrayList<>();
+    private final List<TaskMetrics> tasks = new ArrayList<>();
+    private long initializeNanos;
+
+    synchronized void addArtifact(SignMetrics metrics) {
+        artifacts.add(metrics);
+    }
+
+    synchronized void addTask(TaskMetrics metrics) {
+        tasks.add(metrics);
+    }
+
+    synchronized void addInitialize(long nanos) {
+        initializeNanos += nanos;
+    }
+
+    synchronized boolean isEmpty() {
+        return artifacts.isEmpty() && tasks.isEmpty();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static void string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    synchronized void write(File report) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"initializeMs\": ").append(millis(initializeNanos));
+        json.append(",\n  \"tasks\": [");
+        for (int i = 0; i < tasks.size(); i++) {
+            TaskMetrics task = tasks.get(i);
+            json.append(i == 0 ? "\n" : ",\n").append("    {\"path\": ");
+            string(json, task.path);
+            json.append(", \"startedAt\": ").append(task.startedAt)
+                    .append(", \"durationMs\": ").append(millis(task.nanos))
+                    .append(", \"artifacts\": ").append(task.artifacts).append('}');
+        }
+        json.append("\n  ],\n  \"artifacts\": [");
+        for (int i = 0; i < artifacts.size(); i++) {
+            SignMetrics artifact = artifacts.get(i);
+            json.append(i == 0 ? "\n" : ",\n").append("    {\"file\": ");
+            string(json, artifact.artifact.getPath());
+            json.append(", \"size\": ").append(artifact.size)
+                    .append(", \"startedAt\": ").append(artifact.startedAt)
+                    .append(", \"durationMs\": ").append(millis(artifact.totalNanos));
+            for (SignMetrics.Phase phase : SignMetrics.Phase.values()) {
+                json.append(", \"").append(phase.name().toLowerCase(Locale.ROOT)).append("Ms\": ")
+                        .append(millis(artifact.getNanos(phase)));
+            }
+            json.append(", \"processes\": ").append(artifact.processes)
+                    .append(", \"cacheHit\": ").append(artifact.cacheHit)
+                    .append(", \"succeed\": ").append(artifact.succeed).append('}');
+        }
+        json.append("\n  ]\n}\n");
+        Files.createDirectories(report.getParentFile().toPath());
+        Files.write(report.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    synchronized void logSummary(Logger logger, File report) {
+        long size = 0, total = 0, processes = 0;
+        int cacheHits = 0, failures = 0;
+        long[] phases = new long[SignMetrics.Phase.values().length];
+        for (SignMetrics artifact : artifacts) {
+            size += artifact.size;
+            total += artifact.totalNanos;
+            processes += artifact.processes;
+            if (artifact.cacheHit) cacheHits++;
+            if (!artifact.succeed) failures++;
+            for (SignMetrics.Phase phase : SignMetrics.Phase.values()) {
+                phases[phase.ordinal()] += artifact.getNanos(phase);
+            }
+        }
+        StringBuilder summary = new StringBuilder();
+        summary.append("Signed ").append(artifacts.size()).append(" artifacts (")
+                .append(size / 1024).append(" KiB) in ").append(millis(total)).append(" ms");
+        summary.append(": initialize ").append(millis(initializeNanos + phases[SignMetrics.Phase.INITIALIZE.ordinal()])).append(" ms");
+        summary.append(", hash ").append(millis(phases[SignMetrics.Phase.HASH.ordinal()])).append(" ms");
+        summary.append(", sign ").append(millis(phases[SignMetrics.Phase.SIGN.ordinal()])).append(" ms");
+        summary.append(", verify ").append(millis(phases[SignMetrics.Phase.VERIFY.ordinal()])).append(" ms");
+        summary.append(", ").append(processes).append(" processes, ").append(cacheHits).append(" cache hits");
+        if (failures != 0) {
+            summary.append(", ").append(failures).append(" failed");
+        }
+        summary.append(". Report: ").append(report);
+        logger.lifecycle(summary.toString());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignatureProducers.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.impl;
+
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.plugins.ExtraPropertiesExtension;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The sign task producing each signature file of the build, so a file attached to several publications is signed
+ * by one task, and the signature is declared as the output of that task only.
+ * <p>
+ * All tasks publishing a signature claim it at configuration time, the producer is the claimant of the smallest path,
+ * resolved when the task graph built. Not the first claimant: publications sharing several files in different orders
+ * would depend on each other. Keyed by the canonical path of signature, contents of artifacts don't exist yet.
+ */
+class SignatureProducers {
+    private static final String KEY = SignatureProducers.class.getName();
+
+    /**
+     * Canonical path of signature -&gt; claimants. A jdk map, the plugin may be loaded by several classloaders
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Set<Task>> of(Project project) {
+        ExtraPropertiesExtension properties = project.getRootProject().getExtensions().getExtraProperties();
+        synchronized (properties) {
+            if (properties.has(KEY)) {
+                return (Map<String, Set<Task>>) properties.get(KEY);
+            }
+            Map<String, Set<Task>> producers = new ConcurrentHashMap<>();
+            properties.set(KEY, producers);
+            return producers;
+        }
+    }
+
+    private static String key(File signFile) {
+        try {
+            return signFile.getCanonicalPath();
+        } catch (IOException e) {
+            return signFile.getAbsolutePath();
+        }
+    }
+
+    /**
+     * {@code task} publishes {@code signFile}
+     */
+    static void claim(Task task, File signFile) {
+        of(task.getProject()).computeIfAbsent(key(signFile), $ -> ConcurrentHashMap.newKeySet()).add(task);
+    }
+
+    /**
+     * {@code task} no longer publishes {@code signFile}
+     */
+    static void release(Task task, File signFile) {
+        Set<Task> claimants = of(task.getProject()).get(key(signFile));
+        if (claimants != null) {
+            claimants.remove(task);
+        }
+    }
+
+    /**
+     * @return The task producing {@code signFile}, the same one for all claimants
+     */
+    static Task producer(Task task, File signFile) {
+        Set<Task> claimants = of(task.getProject()).get(key(signFile));
+        Task producer = task;
+        if (claimants != null) {
+            for (Task claimant : claimants) {
+                if (claimant.getPath().compareTo(producer.getPath()) < 0) {
+                    producer = claimant;
+                }
+            }
+        }
+        return producer;
+    }
+}
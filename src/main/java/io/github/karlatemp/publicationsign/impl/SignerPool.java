@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignerPool.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.impl;
+
+import io.github.karlatemp.publicationsign.signer.ArtifactSigner;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Initialized signers kept for the lifetime of Gradle daemon, reused by later builds with same configuration.
+ * <p>
+ * Signers are keyed by {@link ArtifactSigner#getPoolKey()}, replaced when {@link ArtifactSigner#isPoolValid()}
+ * reports states changed (e.g. key files modified), and closed after not used for the idle timeout.
+ */
+final class SignerPool {
+    static final SignerPool INSTANCE = new SignerPool();
+
+    private static class Entry {
+        final ArtifactSigner signer;
+        int users;
+        long lastUsed;
+
+        Entry(ArtifactSigner signer) {
+            this.signer = signer;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private ScheduledExecutorService evictor;
+    private Thread shutdownHook;
+
+    private SignerPool() {
+    }
+
+    /**
+     * The shutdown hook &amp; evictor pin the classloader of plugin, only kept while signers pooled.
+     * Called with the lock held after entries changed
+     */
+    private void entriesChanged() {
+        if (entries.isEmpty()) {
+            if (shutdownHook != null) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                } catch (IllegalStateException ignored) {
+                    // Shutting down
+                }
+                shutdownHook = null;
+            }
+            if (evictor != null) {
+                evictor.shutdown();
+                evictor = null;
+            }
+        } else if (shutdownHook == null) {
+            shutdownHook = new Thread(this::closeAll, "PublicationSign signer pool shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    /**
+     * Take the pooled signer of same configuration, or initialize {@code signer} and put it into the pool.
+     *
+     * @return The signer should be used for signing, must be {@link #release(ArtifactSigner, long) released} after build
+     */
+    ArtifactSigner acquire(ArtifactSigner signer, String poolKey, Logger logger) throws Exception {
+        ArtifactSigner stale = null;
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(poolKey);
+            if (entry != null && entry.users == 0 && !entry.signer.isPoolValid()) {
+                entries.remove(poolKey);
+                stale = entry.signer;
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(signer);
+                entries.put(poolKey, entry);
+            }
+            entry.users++;
+            entriesChanged();
+        }
+        if (stale != null) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Pooled signer " + stale + " outdated, re-initializing");
+            }
+            close(stale);
+        }
+        try {
+            //noinspection SynchronizationOnLocalVariableOrMethodParameter
+            synchronized (entry) {
+                // Idempotent, no-op for warm signers
+                entry.signer.initialize(logger);
+            }
+        } catch (Throwable e) {
+            synchronized (this) {
+                entry.users--;
+                if (entries.get(poolKey) == entry) {
+                    entries.remove(poolKey);
+                    entriesChanged();
+                }
+            }
+            throw e;
+        }
+        if (entry.signer != signer && logger.isInfoEnabled()) {
+            logger.info("Reusing pooled signer " + entry.signer);
+        }
+        return entry.signer;
+    }
+
+    void release(ArtifactSigner signer, long idleTimeout) {
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (entry.signer == signer) {
+                    entry.users--;
+                    entry.lastUsed = System.currentTimeMillis();
+                }
+            }
+            if (evictor == null) {
+                evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "PublicationSign signer pool evictor");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            evictor.schedule(() -> evictIdle(idleTimeout), idleTimeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void evictIdle(long idleTimeout) {
+        List<ArtifactSigner> idle = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.users == 0 && now - entry.lastUsed >= idleTimeout) {
+                    iterator.remove();
+                    idle.add(entry.signer);
+                }
+            }
+            entriesChanged();
+        }
+        for (ArtifactSigner signer : idle) {
+            close(signer);
+        }
+    }
+
+    private void closeAll() {
+        List<ArtifactSigner> signers = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                signers.add(entry.signer);
+            }
+            entries.clear();
+        }
+        for (ArtifactSigner signer : signers) {
+            close(signer);
+        }
+    }
+
+    private static void close(ArtifactSigner signer) {
+        try {
+            signer.close();
+        } catch (Exception e) {
+            Logging.getLogger(SignerPool.class).warn("Failed to close " + signer, e);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignerService.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.impl;
+
+import io.github.karlatemp.publicationsign.signer.ArtifactSigner;
+import io.github.karlatemp.publicationsign.signer.SignEvents;
+import io.github.karlatemp.publicationsign.signer.SignExecutor;
+import io.github.karlatemp.publicationsign.signer.SignListener;
+import io.github.karlatemp.publicationsign.signer.SignMetrics;
+import org.gradle.api.Project;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build scoped owner of signers, shared by sign tasks of all projects.
+ * <p>
+ * Signers are initialized once per build (keys imported once), closed when the build finished.
+ * Signing from all tasks is bounded by {@link Parameters#getMaxConcurrentSigns()}
+ * <p>
+ * If {@link Parameters#getSignerPool()} enabled, initialized signers are kept warm by {@link SignerPool} for later builds
+ * instead of being closed.
+ */
+public abstract class SignerService implements BuildService<SignerService.Parameters>, AutoCloseable {
+    public static final String NAME = "publicationSign";
+    public static final String MAX_CONCURRENT_SIGNS_PROPERTY = "publicationSign.maxConcurrentSigns";
+    public static final String SIGNER_POOL_PROPERTY = "publicationSign.signerPool";
+    public static final String SIGNER_POOL_IDLE_TIMEOUT_PROPERTY = "publicationSign.signerPoolIdleTimeout";
+
+    public interface Parameters extends BuildServiceParameters {
+        Property<Integer> getMaxConcurrentSigns();
+
+        Property<Boolean> getSignerPool();
+
+        /**
+         * Seconds of pooled signers not used before closed
+         */
+        Property<Long> getSignerPoolIdleTimeout();
+
+        /**
+         * Where the signing metrics of the build written to
+         */
+        RegularFileProperty getMetricsReport();
+    }
+
+    /**
+     * Signers of tasks -&gt; signers used for signing, different if taken from {@link SignerPool}
+     * or initialized by another task
+     */
+    private final Map<ArtifactSigner, ArtifactSigner> initialized = new IdentityHashMap<>();
+    /**
+     * {@link ArtifactSigner#getPoolKey()} -&gt; signers used for signing.
+     * <p>
+     * Tasks loaded from configuration cache hold their own copies of the same signer,
+     * copies of same key share one signer, so keys are imported (and gpg-agent restarted) once.
+     */
+    private final Map<String, ArtifactSigner> delegates = new HashMap<>();
+    /**
+     * Signers used for signing, taken from {@link SignerPool}
+     */
+    private final Set<ArtifactSigner> pooled = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Semaphore permits;
+    private final SignMetricsReport metrics = new SignMetricsReport();
+
+    public static Provider<SignerService> register(Project project) {
+        Gradle gradle = project.getGradle();
+        Project rootProject = project.getRootProject();
+        Object maxConcurrentSigns = rootProject.findProperty(MAX_CONCURRENT_SIGNS_PROPERTY);
+        Object signerPool = rootProject.findProperty(SIGNER_POOL_PROPERTY);
+        Object signerPoolIdleTimeout = rootProject.findProperty(SIGNER_POOL_IDLE_TIMEOUT_PROPERTY);
+        return gradle.getSharedServices().registerIfAbsent(NAME, SignerService.class, spec -> {
+            int max = maxConcurrentSigns == null
+                    ? Runtime.getRuntime().availableProcessors()
+                    : Integer.parseInt(maxConcurrentSigns.toString());
+            spec.getParameters().getMaxConcurrentSigns().set(max);
+            spec.getParameters().getSignerPool().set(signerPool != null && Boolean.parseBoolean(signerPool.toString()));
+            spec.getParameters().getSignerPoolIdleTimeout().set(signerPoolIdleTimeout == null
+                    ? 30 * 60L
+                    : Long.parseLong(signerPoolIdleTimeout.toString()));
+            spec.getParameters().getMetricsReport().set(
+                    rootProject.getLayout().getBuildDirectory().file("reports/publication-sign/signing-metrics.json")
+            );
+        });
+    }
+
+    private synchronized Semaphore permits() {
+        if (permits == null) {
+            permits = new Semaphore(Math.max(getParameters().getMaxConcurrentSigns().getOrElse(1), 1));
+        }
+        return permits;
+    }
+
+    /**
+     * Initialize {@code signer} if not initialized in this build
+     */
+    public void initialize(ArtifactSigner signer, SignListener[] listeners, Logger logger) throws Exception {
+        synchronized (initialized) {
+            if (initialized.containsKey(signer)) return;
+            String key = signer.getPoolKey();
+            ArtifactSigner shared = key == null ? null : delegates.get(key);
+            if (shared != null) {
+                initialized.put(signer, shared);
+                return;
+            }
+            if (listeners.length != 0) {
+                SignEvents.initializeStarted(listeners, signer);
+            }
+            long start = System.nanoTime();
+            Throwable failure = null;
+            try {
+                ArtifactSigner delegate;
+                if (key != null && getParameters().getSignerPool().getOrElse(false)) {
+                    delegate = SignerPool.INSTANCE.acquire(signer, key, logger);
+                    pooled.add(delegate);
+                } else {
+                    signer.initialize(logger);
+                    delegate = signer;
+                }
+                initialized.put(signer, delegate);
+                if (key != null) {
+                    delegates.put(key, delegate);
+                }
+            } catch (Throwable e) {
+                failure = e;
+                throw e;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                metrics.addInitialize(nanos);
+                if (listeners.length != 0) {
+                    SignEvents.initializeFinished(listeners, signer, nanos, failure);
+                }
+            }
+        }
+    }
+
+    private ArtifactSigner delegate(ArtifactSigner signer) {
+        synchronized (initialized) {
+            ArtifactSigner delegate = initialized.get(signer);
+            return delegate == null ? signer : delegate;
+        }
+    }
+
+    /**
+     * Sign {@code artifactFiles} by {@link ArtifactSigner#signBatch(Logger, List, SignExecutor)}
+     *
+     * @param executor Runs signing of single artifact
+     */
+    public List<CompletableFuture<ArtifactSigner.SignResult>> signBatch(
+            ArtifactSigner signer, SignListener[] listeners, Logger logger,
+            List<File> artifactFiles, SignExecutor executor
+    ) {
+        return delegate(signer).signBatch(logger, artifactFiles, (artifactFile, signing) ->
+                executor.submit(artifactFile, () -> call(signer, listeners, logger, artifactFile, signing))
+        );
+    }
+
+    /**
+     * Run {@code signing} with the concurrency limit, metrics &amp; listeners applied
+     */
+    private ArtifactSigner.SignResult call(
+            ArtifactSigner signer, SignListener[] listeners, Logger logger, File artifactFile,
+            Callable<ArtifactSigner.SignResult> signing
+    ) throws Exception {
+        Semaphore permits = permits();
+        permits.acquire();
+        if (logger.isInfoEnabled()) {
+            logger.info("Signing " + artifactFile);
+        }
+        SignMetrics artifactMetrics = SignMetrics.begin(artifactFile);
+        boolean events = SignEvents.begin(listeners);
+        if (events) {
+            SignEvents.signStarted(listeners, signer, artifactFile);
+        }
+        ArtifactSigner.SignResult result = null;
+        Throwable failure = null;
+        try {
+            result = signing.call();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            artifactMetrics.end(result != null);
+            metrics.addArtifact(artifactMetrics);
+            if (events) {
+                SignEvents.end();
+                SignEvents.signFinished(listeners, signer, artifactFile, artifactMetrics.size, artifactMetrics.totalNanos, result, failure);
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Record the execution of a sign task for the metrics report
+     */
+    public void taskExecuted(String path, long startedAt, long nanos, int artifacts) {
+        metrics.addTask(new SignMetricsReport.TaskMetrics(path, startedAt, nanos, artifacts));
+    }
+
+    @Override
+    public void close() {
+        if (!metrics.isEmpty()) {
+            File report = getParameters().getMetricsReport().get().getAsFile();
+            Logger logger = Logging.getLogger(SignerService.class);
+            try {
+                metrics.write(report);
+                metrics.logSummary(logger, report);
+            } catch (IOException e) {
+                logger.warn("Failed to write signing metrics " + report, e);
+            }
+        }
+        List<ArtifactSigner> signers = new ArrayList<>();
+        synchronized (initialized) {
+            long idleTimeout = TimeUnit.SECONDS.toMillis(getParameters().getSignerPoolIdleTimeout().getOrElse(0L));
+            Set<ArtifactSigner> used = Collections.newSetFromMap(new IdentityHashMap<>());
+            used.addAll(initialized.values());
+            for (ArtifactSigner signer : used) {
+                if (pooled.contains(signer)) {
+                    SignerPool.INSTANCE.release(signer, idleTimeout);
+                } else {
+                    signers.add(signer);
+                }
+            }
+            initialized.clear();
+            delegates.clear();
+            pooled.clear();
+        }
+        for (ArtifactSigner signer : signers) {
+            try {
+                signer.close();
+            } catch (Exception e) {
+                Logging.getLogger(SignerService.class).warn("Failed to close " + signer, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/PgpArmor.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.pgp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * ASCII armor (RFC 4880 6.2), same layout as gpg writes
+ */
+public class PgpArmor {
+    public static final String SIGNATURE = "PGP SIGNATURE";
+
+    private static final int CRC24_INIT = 0xB704CE;
+    private static final int CRC24_POLY = 0x1864CFB;
+
+    public static int crc24(byte[] data) {
+        int crc = CRC24_INIT;
+        for (byte b : data) {
+            crc ^= (b & 0xFF) << 16;
+            for (int i = 0; i < 8; i++) {
+                crc <<= 1;
+                if ((crc & 0x1000000) != 0) {
+                    crc ^= CRC24_POLY;
+                }
+            }
+        }
+        return crc & 0xFFFFFF;
+    }
+
+    public static byte[] armor(String type, byte[] data) {
+        StringBuilder result = new StringBuilder();
+        result.append("-----BEGIN ").append(type).append("-----\n\n");
+        String encoded = Base64.getEncoder().encodeToString(data);
+        for (int i = 0; i < encoded.length(); i += 64) {
+            result.append(encoded, i, Math.min(i + 64, encoded.length())).append('\n');
+        }
+        int crc = crc24(data);
+        result.append('=').append(Base64.getEncoder().encodeToString(new byte[]{
+                (byte) (crc >> 16), (byte) (crc >> 8), (byte) crc
+        })).append('\n');
+        result.append("-----END ").append(type).append("-----\n");
+        return result.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static void writeArmored(OutputStream out, String type, byte[] data) throws IOException {
+        out.write(armor(type, data));
+    }
+
+    public static boolean isArmored(byte[] data) {
+        int i = 0;
+        while (i < data.length && Character.isWhitespace(data[i])) i++;
+        return data.length - i > 10 && new String(data, i, 10, StandardCharsets.US_ASCII).equals("-----BEGIN");
+    }
+
+    /**
+     * Decode all armored blocks in {@code data}.
+     * <p>
+     * Returns {@code data} self if not armored.
+     */
+    public static byte[] dearmor(byte[] data) throws IOException {
+        if (!isArmored(data)) return data;
+        String text = new String(data, StandardCharsets.US_ASCII);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int index = 0;
+        while (true) {
+            int begin = text.indexOf("-----BEGIN ", index);
+            if (begin == -1) break;
+            int headerEnd = text.indexOf('\n', begin);
+            if (headerEnd == -1) throw new IOException("Bad armor: no header end");
+            int end = text.indexOf("-----END ", headerEnd);
+            if (end == -1) throw new IOException("Bad armor: no armor tail");
+
+            String[] lines = text.substring(headerEnd + 1, end).split("\r?\n");
+            StringBuilder body = new StringBuilder();
+            boolean inHeaders = true;
+            for (String line : lines) {
+                line = line.trim();
+                if (inHeaders) {
+                    // Armor headers, end with an empty line
+                    if (line.isEmpty()) inHeaders = false;
+                    else if (!line.contains(": ")) {
+                        inHeaders = false;
+                        body.append(line);
+                    }
+                    continue;
+                }
+                if (line.startsWith("=")) break; // checksum
+                body.append(line);
+            }
+            result.write(Base64.getDecoder().decode(body.toString()));
+            index = end + 9;
+        }
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/PgpHashAlgorithm.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.pgp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * OpenPGP hash algorithms. (RFC 4880 9.4)
+ * <p>
+ * The ids are same as the ids of libgcrypt
+ */
+public enum PgpHashAlgorithm {
+    SHA1(2, "SHA-1", new byte[]{
+            0x30, 0x21, 0x30, 0x09, 0x06, 0x05, 0x2b, 0x0e, 0x03, 0x02, 0x1a, 0x05, 0x00, 0x04, 0x14
+    }),
+    SHA256(8, "SHA-256", new byte[]{
+            0x30, 0x31, 0x30, 0x0d, 0x06, 0x09, 0x60, (byte) 0x86, 0x48, 0x01, 0x65, 0x03, 0x04, 0x02, 0x01, 0x05, 0x00, 0x04, 0x20
+    }),
+    SHA384(9, "SHA-384", new byte[]{
+            0x30, 0x41, 0x30, 0x0d, 0x06, 0x09, 0x60, (byte) 0x86, 0x48, 0x01, 0x65, 0x03, 0x04, 0x02, 0x02, 0x05, 0x00, 0x04, 0x30
+    }),
+    SHA512(10, "SHA-512", new byte[]{
+            0x30, 0x51, 0x30, 0x0d, 0x06, 0x09, 0x60, (byte) 0x86, 0x48, 0x01, 0x65, 0x03, 0x04, 0x02, 0x03, 0x05, 0x00, 0x04, 0x40
+    }),
+    SHA224(11, "SHA-224", new byte[]{
+            0x30, 0x2d, 0x30, 0x0d, 0x06, 0x09, 0x60, (byte) 0x86, 0x48, 0x01, 0x65, 0x03, 0x04, 0x02, 0x04, 0x05, 0x00, 0x04, 0x1c
+    });
+
+    public final int id;
+    public final String javaName;
+    private final byte[] digestInfoPrefix;
+
+    PgpHashAlgorithm(int id, String javaName, byte[] digestInfoPrefix) {
+        this.id = id;
+        this.javaName = javaName;
+        this.digestInfoPrefix = digestInfoPrefix;
+    }
+
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(javaName);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A new digest updated with the content of {@code file}
+     */
+    public MessageDigest digest(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new FileInputStream(file)) {
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * The PKCS#1 DigestInfo of {@code digest}, the input of RSA signatures
+     */
+    public byte[] toDigestInfo(byte[] digest) {
+        byte[] result = new byte[digestInfoPrefix.length + digest.length];
+        System.arraycopy(digestInfoPrefix, 0, result, 0, digestInfoPrefix.length);
+        System.arraycopy(digest, 0, result, digestInfoPrefix.length, digest.length);
+        return result;
+    }
+
+    public static PgpHashAlgorithm byId(int id) {
+        for (PgpHashAlgorithm algorithm : values()) {
+            if (algorithm.id == id) return algorithm;
+        }
+        throw new IllegalArgumentException("Unsupported hash algorithm " + id);
+    }
+
+    public static PgpHashAlgorithm byName(String name) {
+        String normalized = name.replace("-", "").toUpperCase(Locale.ROOT);
+        for (PgpHashAlgorithm algorithm : values()) {
+            if (algorithm.name().equals(normalized)) return algorithm;
+        }
+        throw new IllegalArgumentException("Unsupported hash algorithm " + name);
+    }
+}
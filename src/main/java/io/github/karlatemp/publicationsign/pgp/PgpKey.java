@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/PgpKey.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.pgp;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.RSAPrivateCrtKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A v4 primary key or subkey, parsed by {@link PgpKeyRing}
+ */
+public class PgpKey {
+    public static final int FLAG_CERTIFY = 0x01;
+    public static final int FLAG_SIGN = 0x02;
+
+    public final byte[] fingerprint;
+    public final int algorithm;
+    public final long created;
+    public final boolean primary;
+    public final PgpKey primaryKey;
+    final BigInteger[] publicValues;
+    /**
+     * The body of the secret key packet after the public key part.
+     */
+    byte[] secretPart;
+
+    /**
+     * The key flags. {@code -1} if no self signature defined it.
+     */
+    public int flags = -1;
+    /**
+     * Seconds after {@link #created}. {@code 0} if never expire.
+     */
+    public long expiration;
+    public boolean revoked;
+    long selfSignatureTime = -1;
+    public final List<String> userIds = new ArrayList<>();
+    public final List<PgpKey> subkeys = new ArrayList<>();
+
+    private PrivateKey privateKey;
+
+    PgpKey(byte[] fingerprint, int algorithm, long created, PgpKey primaryKey, BigInteger[] publicValues) {
+        this.fingerprint = fingerprint;
+        this.algorithm = algorithm;
+        this.created = created;
+        this.primary = primaryKey == null;
+        this.primaryKey = primaryKey;
+        this.publicValues = publicValues;
+    }
+
+    public String getFingerprintHex() {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : fingerprint) {
+            sb.append(String.format("%02X", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    public String getKeyIdHex() {
+        return getFingerprintHex().substring(24);
+    }
+
+    public boolean hasSecret() {
+        return secretPart != null;
+    }
+
+    /**
+     * Is the secret key encrypted by a passphrase
+     */
+    public boolean isSecretProtected() {
+        return secretPart != null && secretPart[0] != 0;
+    }
+
+    public boolean isExpired(long now) {
+        return expiration != 0 && created + expiration <= now;
+    }
+
+    public boolean canSign() {
+        if (flags == -1) return primary; // no flags, primary key can sign by default
+        return (flags & FLAG_SIGN) != 0;
+    }
+
+    public PublicKey getPublicKey() throws Exception {
+        if (algorithm != PgpSignatureBuilder.PUBKEY_RSA) {
+            throw new UnsupportedOperationException("Unsupported public key algorithm " + algorithm + " of " + getFingerprintHex());
+        }
+        return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(publicValues[0], publicValues[1]));
+    }
+
+    /**
+     * Get the unlocked secret key.
+     */
+    public PrivateKey getPrivateKey() throws Exception {
+        return getPrivateKey(null);
+    }
+
+    /**
+     * Get the secret key, unlocked by {@code passphrase} if protected.
+     */
+    public synchronized PrivateKey getPrivateKey(char[] passphrase) throws Exception {
+        if (privateKey != null) return privateKey;
+        if (secretPart == null) {
+            throw new IllegalStateException("Secret of key " + getFingerprintHex() + " not available");
+        }
+        if (algorithm != PgpSignatureBuilder.PUBKEY_RSA) {
+            throw new UnsupportedOperationException("Unsupported public key algorithm " + algorithm + " of " + getFingerprintHex());
+        }
+        byte[] secret = decryptSecret(passphrase);
+        PgpPacket.Reader reader = new PgpPacket.Reader(secret, 0);
+        BigInteger d = reader.mpi();
+        BigInteger p = reader.mpi();
+        BigInteger q = reader.mpi();
+        reader.mpi(); // u = p^-1 mod q, the CRT coefficient of OpenPGP. Java uses q^-1 mod p
+        BigInteger n = publicValues[0];
+        BigInteger e = publicValues[1];
+        privateKey = KeyFactory.getInstance("RSA").generatePrivate(new RSAPrivateCrtKeySpec(
+                n, e, d, p, q,
+                d.mod(p.subtract(BigInteger.ONE)),
+                d.mod(q.subtract(BigInteger.ONE)),
+                q.modInverse(p)
+        ));
+        return privateKey;
+    }
+
+    /**
+     * Decrypt &amp; check the secret MPIs. (RFC 4880 5.5.3)
+     *
+     * @return The secret MPIs without checksum
+     */
+    private byte[] decryptSecret(char[] passphrase) throws Exception {
+        int usage = secretPart[0] & 0xFF;
+        if (usage == 0) {
+            return checkSum16(Arrays.copyOfRange(secretPart, 1, secretPart.length));
+        }
+        if (usage != 254 && usage != 255) {
+            throw new UnsupportedOperationException("Unsupported secret key protection " + usage + " of " + getFingerprintHex());
+        }
+        if (passphrase == null) {
+            throw new UnsupportedOperationException("Key " + getFingerprintHex() + " is protected by passphrase. Please setup the passphrase, or clear it (see key-gen.sh)");
+        }
+        PgpPacket.Reader reader = new PgpPacket.Reader(secretPart, 1);
+        int cipherAlgorithm = reader.u8();
+        String cipherName;
+        int keyLength;
+        int blockSize;
+        switch (cipherAlgorithm) {
+            case 2: // TripleDES
+                cipherName = "DESede";
+                keyLength = 24;
+                blockSize = 8;
+                break;
+            case 7: // AES128
+            case 8: // AES192
+            case 9: // AES256
+                cipherName = "AES";
+                keyLength = 16 + (cipherAlgorithm - 7) * 8;
+                blockSize = 16;
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported cipher " + cipherAlgorithm + " protecting " + getFingerprintHex() + ". Please re-export the key by gpg 2.1+");
+        }
+        int s2kType = reader.u8();
+        if (s2kType != 0 && s2kType != 1 && s2kType != 3) {
+            // 101: gnu-dummy, secret key stored in smartcard or stripped
+            throw new UnsupportedOperationException("Unsupported S2K " + s2kType + " of " + getFingerprintHex());
+        }
+        MessageDigest s2kDigest = PgpHashAlgorithm.byId(reader.u8()).newDigest();
+        byte[] salt = s2kType == 0 ? new byte[0] : reader.bytes(8);
+        long count = 0;
+        if (s2kType == 3) {
+            int c = reader.u8();
+            count = (16L + (c & 15)) << ((c >> 4) + 6);
+        }
+        byte[] iv = reader.bytes(blockSize);
+        byte[] key = s2k(s2kDigest, salt, count, new String(passphrase).getBytes(StandardCharsets.UTF_8), keyLength);
+
+        Cipher cipher = Cipher.getInstance(cipherName + "/CFB/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, cipherName), new IvParameterSpec(iv));
+        byte[] plain = cipher.doFinal(secretPart, reader.offset, secretPart.length - reader.offset);
+        if (usage == 255) {
+            return checkSum16(plain);
+        }
+        if (plain.length < 20) {
+            throw new IllegalStateException("Bad secret key of " + getFingerprintHex());
+        }
+        byte[] secret = Arrays.copyOf(plain, plain.length - 20);
+        byte[] sha1 = MessageDigest.getInstance("SHA-1").digest(secret);
+        if (!MessageDigest.isEqual(sha1, Arrays.copyOfRange(plain, plain.length - 20, plain.length))) {
+            throw new IllegalStateException("Wrong passphrase of key " + getFingerprintHex());
+        }
+        return secret;
+    }
+
+    private byte[] checkSum16(byte[] data) {
+        if (data.length < 2) {
+            throw new IllegalStateException("Bad secret key of " + getFingerprintHex());
+        }
+        int checksum = 0;
+        for (int i = 0; i < data.length - 2; i++) {
+            checksum += data[i] & 0xFF;
+        }
+        int expected = ((data[data.length - 2] & 0xFF) << 8) | (data[data.length - 1] & 0xFF);
+        if ((checksum & 0xFFFF) != expected) {
+            throw new IllegalStateException("Bad secret key checksum of " + getFingerprintHex() + (secretPart[0] == 0 ? "" : ", wrong passphrase?"));
+        }
+        return Arrays.copyOf(data, data.length - 2);
+    }
+
+    /**
+     * Simple, salted and iterated-salted String-to-Key. (RFC 4880 3.7.1)
+     */
+    private static byte[] s2k(MessageDigest digest, byte[] salt, long count, byte[] passphrase, int keyLength) {
+        byte[] key = new byte[keyLength];
+        int generated = 0;
+        for (int preload = 0; generated < keyLength; preload++) {
+            digest.reset();
+            for (int i = 0; i < preload; i++) {
+                digest.update((byte) 0);
+            }
+            long total = Math.max(count, salt.length + passphrase.length);
+            while (total > 0) {
+                int len = (int) Math.min(total, salt.length);
+                digest.update(salt, 0, len);
+                total -= len;
+                if (total <= 0) break;
+                len = (int) Math.min(total, passphrase.length);
+                digest.update(passphrase, 0, len);
+                total -= len;
+            }
+            byte[] hash = digest.digest();
+            int len = Math.min(hash.length, keyLength - generated);
+            System.arraycopy(hash, 0, key, generated, len);
+            generated += len;
+        }
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return (primary ? "pub " : "sub ") + getFingerprintHex() + " (algo " + algorithm + ")"
+                + (userIds.isEmpty() ? "" : " " + userIds.get(0));
+    }
+}
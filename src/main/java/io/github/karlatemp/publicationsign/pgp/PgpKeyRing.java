@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/PgpKeyRing.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.pgp;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Public &amp; secret keys loaded from exported key files. (armored or binary)
+ * <p>
+ * Keys with same fingerprint from different files are merged.
+ */
+public class PgpKeyRing {
+    private final Map<String, PgpKey> primaryKeys = new LinkedHashMap<>();
+
+    public static PgpKeyRing load(Collection<File> files) throws IOException {
+        PgpKeyRing ring = new PgpKeyRing();
+        for (File file : files) {
+            if (file == null) continue;
+            try {
+                ring.add(PgpPacket.readPackets(Files.readAllBytes(file.toPath())));
+            } catch (IOException | RuntimeException e) {
+                throw new IOException("Failed to load keys from " + file, e);
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * Load keys from binary or armored data, e.g. the output of `gpg --export`
+     */
+    public static PgpKeyRing load(byte[] data) throws IOException {
+        PgpKeyRing ring = new PgpKeyRing();
+        ring.add(PgpPacket.readPackets(data));
+        return ring;
+    }
+
+    public Collection<PgpKey> getPrimaryKeys() {
+        return primaryKeys.values();
+    }
+
+    /**
+     * All primary keys and subkeys.
+     */
+    public List<PgpKey> getKeys() {
+        List<PgpKey> keys = new ArrayList<>();
+        for (PgpKey primaryKey : primaryKeys.values()) {
+            keys.add(primaryKey);
+            keys.addAll(primaryKey.subkeys);
+        }
+        return keys;
+    }
+
+    public PgpKey findKey(byte[] keyIdOrFingerprint) {
+        for (PgpKey key : getKeys()) {
+            byte[] fpr = key.fingerprint;
+            int offset = fpr.length - keyIdOrFingerprint.length;
+            if (offset < 0) continue;
+            boolean matched = true;
+            for (int i = 0; i < keyIdOrFingerprint.length; i++) {
+                if (fpr[offset + i] != keyIdOrFingerprint[i]) {
+                    matched = false;
+                    break;
+                }
+            }
+            if (matched) return key;
+        }
+        return null;
+    }
+
+    /**
+     * Find the key for signing, same as gpg: the newest valid signing key with secret available.
+     *
+     * @param userId {@code --local-user} of gpg, key id, fingerprint or a part of user id. Nullable
+     */
+    public PgpKey findSigningKey(String userId, long now) {
+        for (PgpKey primaryKey : primaryKeys.values()) {
+            if (userId != null && !matches(primaryKey, userId)) continue;
+            if (primaryKey.revoked || primaryKey.isExpired(now)) continue;
+            PgpKey result = null;
+            if (primaryKey.hasSecret() && primaryKey.canSign()) {
+                result = primaryKey;
+            }
+            for (PgpKey subkey : primaryKey.subkeys) {
+                if (subkey.revoked || subkey.isExpired(now)) continue;
+                if (!subkey.hasSecret() || !subkey.canSign()) continue;
+                if (result == null || subkey.created >= result.created) {
+                    result = subkey;
+                }
+            }
+            if (result != null) return result;
+        }
+        return null;
+    }
+
+    private static boolean matches(PgpKey primaryKey, String userId) {
+        String id = userId.trim();
+        if (id.endsWith("!")) id = id.substring(0, id.length() - 1);
+        if (id.startsWith("0x") || id.startsWith("0X")) id = id.substring(2);
+        String hex = id.replace(" ", "").toUpperCase(Locale.ROOT);
+        if (hex.length() >= 8 && hex.matches("[0-9A-F]+")) {
+            if (primaryKey.getFingerprintHex().endsWith(hex)) return true;
+            for (PgpKey subkey : primaryKey.subkeys) {
+                if (subkey.getFingerprintHex().endsWith(hex)) return true;
+            }
+        }
+        String lowerId = userId.toLowerCase(Locale.ROOT);
+        for (String uid : primaryKey.userIds) {
+            if (uid.toLowerCase(Locale.ROOT).contains(lowerId)) return true;
+        }
+        return false;
+    }
+
+    void add(List<PgpPacket> packets) throws IOException {
+        PgpKey primary = null;
+        PgpKey current = null;
+        for (PgpPacket packet : packets) {
+            switch (packet.tag) {
+                case PgpPacket.TAG_PUBLIC_KEY:
+                case PgpPacket.TAG_SECRET_KEY: {
+                    PgpKey key = parseKey(packet, null);
+                    PgpKey exists = primaryKeys.get(key.getFingerprintHex());
+                    if (exists != null) {
+                        if (exists.secretPart == null) exists.secretPart = key.secretPart;
+                        key = exists;
+                    } else {
+                        primaryKeys.put(key.getFingerprintHex(), key);
+                    }
+                    primary = current = key;
+                    break;
+                }
+                case PgpPacket.TAG_PUBLIC_SUBKEY:
+                case PgpPacket.TAG_SECRET_SUBKEY: {
+                    if (primary == null) throw new IOException("Subkey without primary key");
+                    PgpKey key = parseKey(packet, primary);
+                    PgpKey exists = null;
+                    for (PgpKey subkey : primary.subkeys) {
+                        if (Arrays.equals(subkey.fingerprint, key.fingerprint)) {
+                            exists = subkey;
+                            break;
+                        }
+                    }
+                    if (exists != null) {
+                        if (exists.secretPart == null) exists.secretPart = key.secretPart;
+                        key = exists;
+                    } else {
+                        primary.subkeys.add(key);
+                    }
+                    current = key;
+                    break;
+                }
+                case PgpPacket.TAG_USER_ID: {
+                    if (primary != null) {
+                        String uid = new String(packet.body, StandardCharsets.UTF_8);
+                        if (!primary.userIds.contains(uid)) primary.userIds.add(uid);
+                    }
+                    current = primary;
+                    break;
+                }
+                case PgpPacket.TAG_SIGNATURE: {
+                    if (primary != null && current != null) {
+                        applySelfSignature(primary, current, PgpSignature.parse(packet.body));
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void applySelfSignature(PgpKey primary, PgpKey target, PgpSignature signature) {
+        if (signature == null) return;
+        byte[] issuer = signature.getIssuer();
+        if (issuer != null) {
+            byte[] fpr = primary.fingerprint;
+            int offset = fpr.length - issuer.length;
+            if (offset < 0) return;
+            for (int i = 0; i < issuer.length; i++) {
+                if (fpr[offset + i] != issuer[i]) return; // Not a self signature
+            }
+        }
+        int type = signature.type;
+        if (type == 0x20 || type == 0x28) {
+            target.revoked = true;
+            return;
+        }
+        boolean certification = type >= 0x10 && type <= 0x13 && target.primary;
+        boolean binding = type == 0x18 && !target.primary;
+        if (!certification && !binding) return;
+        if (signature.creationTime < target.selfSignatureTime) return;
+        target.selfSignatureTime = signature.creationTime;
+        target.flags = signature.keyFlags;
+        target.expiration = signature.keyExpiration;
+    }
+
+    static PgpKey parseKey(PgpPacket packet, PgpKey primary) throws IOException {
+        byte[] body = packet.body;
+        PgpPacket.Reader reader = new PgpPacket.Reader(body, 0);
+        int version = reader.u8();
+        if (version != 4) {
+            throw new IOException("Unsupported key version " + version);
+        }
+        long created = reader.u32();
+        int algorithm = reader.u8();
+        List<BigInteger> values = new ArrayList<>();
+        switch (algorithm) {
+            case 1:
+            case 2:
+            case 3: // RSA: n, e
+                values.add(reader.mpi());
+                values.add(reader.mpi());
+                break;
+            case 16: // Elgamal: p, g, y
+                values.add(reader.mpi());
+                values.add(reader.mpi());
+                values.add(reader.mpi());
+                break;
+            case 17: // DSA: p, q, g, y
+                values.add(reader.mpi());
+                values.add(reader.mpi());
+                values.add(reader.mpi());
+                values.add(reader.mpi());
+                break;
+            case 18: // ECDH: oid, point, kdf
+                reader.bytes(reader.u8());
+                values.add(reader.mpi());
+                reader.bytes(reader.u8());
+                break;
+            case 19:
+            case 22: // ECDSA, EdDSA: oid, point
+                reader.bytes(reader.u8());
+                values.add(reader.mpi());
+                break;
+            default:
+                throw new IOException("Unsupported public key algorithm " + algorithm);
+        }
+        int publicLength = reader.offset;
+        byte[] fingerprint;
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update((byte) 0x99);
+            sha1.update((byte) (publicLength >> 8));
+            sha1.update((byte) publicLength);
+            sha1.update(body, 0, publicLength);
+            fingerprint = sha1.digest();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        PgpKey key = new PgpKey(fingerprint, algorithm, created, primary, values.toArray(new BigInteger[0]));
+        if (packet.tag == PgpPacket.TAG_SECRET_KEY || packet.tag == PgpPacket.TAG_SECRET_SUBKEY) {
+            key.secretPart = Arrays.copyOfRange(body, publicLength, body.length);
+        }
+        return key;
+    }
+}
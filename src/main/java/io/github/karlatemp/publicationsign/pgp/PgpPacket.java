@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/PgpPacket.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.pgp;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An OpenPGP packet. (RFC 4880 4.2)
+ */
+public class PgpPacket {
+    public static final int TAG_SIGNATURE = 2;
+    public static final int TAG_SECRET_KEY = 5;
+    public static final int TAG_PUBLIC_KEY = 6;
+    public static final int TAG_SECRET_SUBKEY = 7;
+    public static final int TAG_USER_ID = 13;
+    public static final int TAG_PUBLIC_SUBKEY = 14;
+
+    public final int tag;
+    public final byte[] body;
+
+    public PgpPacket(int tag, byte[] body) {
+        this.tag = tag;
+        this.body = body;
+    }
+
+    /**
+     * Read all packets in {@code data}. Armored data will be decoded first.
+     */
+    public static List<PgpPacket> readPackets(byte[] data) throws IOException {
+        data = PgpArmor.dearmor(data);
+        List<PgpPacket> packets = new ArrayList<>();
+        int offset = 0;
+        while (offset < data.length) {
+            int ctb = data[offset++] & 0xFF;
+            if ((ctb & 0x80) == 0) {
+                throw new IOException("Bad packet header 0x" + Integer.toHexString(ctb) + " at " + (offset - 1));
+            }
+            int tag;
+            long len;
+            if ((ctb & 0x40) != 0) { // new format
+                tag = ctb & 0x3F;
+                int o1 = data[offset++] & 0xFF;
+                if (o1 < 192) {
+                    len = o1;
+                } else if (o1 < 224) {
+                    len = ((o1 - 192) << 8) + (data[offset++] & 0xFF) + 192;
+                } else if (o1 == 255) {
+                    len = readUInt(data, offset);
+                    offset += 4;
+                } else {
+                    throw new IOException("Partial body length not supported");
+                }
+            } else {
+                tag = (ctb >> 2) & 0xF;
+                switch (ctb & 3) {
+                    case 0:
+                        len = data[offset++] & 0xFF;
+                        break;
+                    case 1:
+                        len = ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+                        offset += 2;
+                        break;
+                    case 2:
+                        len = readUInt(data, offset);
+                        offset += 4;
+                        break;
+                    default:
+                        len = data.length - offset;
+                }
+            }
+            if (offset + len > data.length) {
+                throw new IOException("Packet truncated. tag=" + tag + ", length=" + len);
+            }
+            byte[] body = new byte[(int) len];
+            System.arraycopy(data, offset, body, 0, body.length);
+            offset += body.length;
+            packets.add(new PgpPacket(tag, body));
+        }
+        return packets;
+    }
+
+    static long readUInt(byte[] data, int offset) {
+        return ((long) (data[offset] & 0xFF) << 24)
+                | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8)
+                | (data[offset + 3] & 0xFF);
+    }
+
+    /**
+     * A cursor over a packet body
+     */
+    public static class Reader {
+        public final byte[] data;
+        public int offset;
+
+        public Reader(byte[] data, int offset) {
+            this.data = data;
+            this.offset = offset;
+        }
+
+        public int u8() {
+            return data[offset++] & 0xFF;
+        }
+
+        public int u16() {
+            int result = ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+            offset += 2;
+            return result;
+        }
+
+        public long u32() {
+            long result = readUInt(data, offset);
+            offset += 4;
+            return result;
+        }
+
+        public byte[] bytes(int len) {
+            byte[] result = new byte[len];
+            System.arraycopy(data, offset, result, 0, len);
+            offset += len;
+            return result;
+        }
+
+        public BigInteger mpi() {
+            int bits = u16();
+            return new BigInteger(1, bytes((bits + 7) / 8));
+        }
+
+        public boolean hasMore() {
+            return offset < data.length;
+        }
+    }
+}
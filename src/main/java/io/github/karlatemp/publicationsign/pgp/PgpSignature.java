@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/PgpSignature.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.pgp;
+
+import java.util.Arrays;
+
+/**
+ * A parsed v4 signature packet. (RFC 4880 5.2.3)
+ */
+public class PgpSignature {
+    public final int type;
+    public final int publicKeyAlgorithm;
+    public final int hashAlgorithm;
+    /**
+     * Version, type, algorithms and hashed subpackets. Hashed after the signed data.
+     */
+    public final byte[] hashedPart;
+    public final int hashLeft16;
+    public final byte[][] values;
+
+    public long creationTime = -1;
+    public int keyFlags = -1;
+    public long keyExpiration;
+    private byte[] issuerFingerprint;
+    private byte[] issuerKeyId;
+
+    private PgpSignature(int type, int publicKeyAlgorithm, int hashAlgorithm, byte[] hashedPart, int hashLeft16, byte[][] values) {
+        this.type = type;
+        this.publicKeyAlgorithm = publicKeyAlgorithm;
+        this.hashAlgorithm = hashAlgorithm;
+        this.hashedPart = hashedPart;
+        this.hashLeft16 = hashLeft16;
+        this.values = values;
+    }
+
+    /**
+     * @return {@code null} if not a v4 signature
+     */
+    public static PgpSignature parse(byte[] body) {
+        PgpPacket.Reader reader = new PgpPacket.Reader(body, 0);
+        if (reader.u8() != 4) return null;
+        int type = reader.u8();
+        int publicKeyAlgorithm = reader.u8();
+        int hashAlgorithm = reader.u8();
+        int hashedLength = reader.u16();
+        int hashedStart = reader.offset;
+        reader.offset += hashedLength;
+        byte[] hashedPart = Arrays.copyOfRange(body, 0, reader.offset);
+        int unhashedLength = reader.u16();
+        int unhashedStart = reader.offset;
+        reader.offset += unhashedLength;
+        int left16 = reader.u16();
+        int count;
+        switch (publicKeyAlgorithm) {
+            case 1:
+            case 3:
+                count = 1;
+                break;
+            default:
+                count = 2;
+        }
+        byte[][] values = new byte[count][];
+        for (int i = 0; i < count && reader.hasMore(); i++) {
+            int bits = reader.u16();
+            values[i] = reader.bytes((bits + 7) / 8);
+        }
+        PgpSignature signature = new PgpSignature(type, publicKeyAlgorithm, hashAlgorithm, hashedPart, left16, values);
+        signature.readSubpackets(body, hashedStart, hashedLength, true);
+        signature.readSubpackets(body, unhashedStart, unhashedLength, false);
+        return signature;
+    }
+
+    private void readSubpackets(byte[] data, int offset, int length, boolean hashed) {
+        int end = offset + length;
+        while (offset < end) {
+            int o1 = data[offset++] & 0xFF;
+            int len;
+            if (o1 < 192) {
+                len = o1;
+            } else if (o1 < 255) {
+                len = ((o1 - 192) << 8) + (data[offset++] & 0xFF) + 192;
+            } else {
+                len = (int) PgpPacket.readUInt(data, offset);
+                offset += 4;
+            }
+            if (len == 0) continue;
+            int type = data[offset] & 0x7F;
+            int start = offset + 1;
+            int dataLen = len - 1;
+            switch (type) {
+                case 2: // Signature creation time
+                    if (hashed) creationTime = PgpPacket.readUInt(data, start);
+                    break;
+                case 9: // Key expiration time
+                    if (hashed) keyExpiration = PgpPacket.readUInt(data, start);
+                    break;
+                case 16: // Issuer
+                    issuerKeyId = Arrays.copyOfRange(data, start, start + dataLen);
+                    break;
+                case 27: // Key flags
+                    if (hashed && dataLen > 0) keyFlags = data[start] & 0xFF;
+                    break;
+                case 33: // Issuer fingerprint
+                    if (dataLen == 21) {
+                        issuerFingerprint = Arrays.copyOfRange(data, start + 1, start + dataLen);
+                    }
+                    break;
+            }
+            offset += len;
+        }
+    }
+
+    /**
+     * @return The fingerprint or key id of issuer, nullable
+     */
+    public byte[] getIssuer() {
+        if (issuerFingerprint != null) return issuerFingerprint;
+        return issuerKeyId;
+    }
+}
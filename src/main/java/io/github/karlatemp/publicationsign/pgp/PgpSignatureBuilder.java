@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/PgpSignatureBuilder.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.pgp;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * Builder of v4 detached signatures of binary documents. (RFC 4880 5.2.3)
+ * <p>
+ * Subpackets layout is same as gpg: hashed issuer fingerprint &amp; creation time, unhashed issuer key id.
+ */
+public class PgpSignatureBuilder {
+    public static final int PUBKEY_RSA = 1;
+    public static final int PUBKEY_DSA = 17;
+    public static final int PUBKEY_ECDSA = 19;
+    public static final int PUBKEY_EDDSA = 22;
+
+    public static final int SIGNATURE_BINARY_DOCUMENT = 0x00;
+
+    private final int publicKeyAlgorithm;
+    private final PgpHashAlgorithm hashAlgorithm;
+    private final byte[] fingerprint;
+    private final byte[] hashedPart;
+
+    public PgpSignatureBuilder(
+            int publicKeyAlgorithm,
+            PgpHashAlgorithm hashAlgorithm,
+            byte[] fingerprint,
+            long creationTime
+    ) {
+        if (fingerprint.length != 20) {
+            throw new IllegalArgumentException("Not a v4 fingerprint");
+        }
+        this.publicKeyAlgorithm = publicKeyAlgorithm;
+        this.hashAlgorithm = hashAlgorithm;
+        this.fingerprint = fingerprint.clone();
+
+        ByteArrayOutputStream subpackets = new ByteArrayOutputStream();
+        // Issuer fingerprint
+        subpackets.write(22);
+        subpackets.write(33);
+        subpackets.write(4);
+        subpackets.write(fingerprint, 0, 20);
+        // Signature creation time
+        subpackets.write(5);
+        subpackets.write(2);
+        writeInt(subpackets, creationTime);
+
+        ByteArrayOutputStream hashed = new ByteArrayOutputStream();
+        hashed.write(4);
+        hashed.write(SIGNATURE_BINARY_DOCUMENT);
+        hashed.write(publicKeyAlgorithm);
+        hashed.write(hashAlgorithm.id);
+        hashed.write(subpackets.size() >> 8);
+        hashed.write(subpackets.size());
+        hashed.write(subpackets.toByteArray(), 0, subpackets.size());
+        this.hashedPart = hashed.toByteArray();
+    }
+
+    public PgpHashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public int getPublicKeyAlgorithm() {
+        return publicKeyAlgorithm;
+    }
+
+    public static byte[] keyIdOf(byte[] fingerprint) {
+        byte[] keyId = new byte[8];
+        System.arraycopy(fingerprint, fingerprint.length - 8, keyId, 0, 8);
+        return keyId;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long value) {
+        out.write((int) (value >> 24));
+        out.write((int) (value >> 16));
+        out.write((int) (value >> 8));
+        out.write((int) value);
+    }
+
+    /**
+     * Complete the signature hash.
+     *
+     * @param dataDigest The digest already updated with whole artifact content
+     * @return The hash to be signed
+     */
+    public byte[] finish(MessageDigest dataDigest) {
+        dataDigest.update(hashedPart);
+        byte[] trailer = new byte[6];
+        trailer[0] = 4;
+        trailer[1] = (byte) 0xFF;
+        int len = hashedPart.length;
+        trailer[2] = (byte) (len >> 24);
+        trailer[3] = (byte) (len >> 16);
+        trailer[4] = (byte) (len >> 8);
+        trailer[5] = (byte) len;
+        dataDigest.update(trailer);
+        return dataDigest.digest();
+    }
+
+    /**
+     * Build the signature packet
+     *
+     * @param hash The result of {@link #finish(MessageDigest)}
+     * @param mpis The signature values. RSA: {@code s}; DSA, ECDSA, EdDSA: {@code r, s}
+     */
+    public byte[] build(byte[] hash, byte[]... mpis) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(hashedPart, 0, hashedPart.length);
+        // unhashed: issuer key id
+        body.write(0);
+        body.write(10);
+        body.write(9);
+        body.write(16);
+        body.write(keyIdOf(fingerprint), 0, 8);
+
+        body.write(hash[0]);
+        body.write(hash[1]);
+        for (byte[] mpi : mpis) {
+            writeMPI(body, mpi);
+        }
+
+        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+        int len = body.size();
+        int tag = 2;
+        if (len < 0x100) {
+            packet.write(0x80 | (tag << 2));
+            packet.write(len);
+        } else if (len < 0x10000) {
+            packet.write(0x80 | (tag << 2) | 1);
+            packet.write(len >> 8);
+            packet.write(len);
+        } else {
+            packet.write(0x80 | (tag << 2) | 2);
+            writeInt(packet, len);
+        }
+        packet.write(body.toByteArray(), 0, len);
+        return packet.toByteArray();
+    }
+
+    public byte[] buildArmored(byte[] hash, byte[]... mpis) {
+        return PgpArmor.armor(PgpArmor.SIGNATURE, build(hash, mpis));
+    }
+
+    static void writeMPI(ByteArrayOutputStream out, byte[] value) {
+        int offset = 0;
+        while (offset < value.length && value[offset] == 0) offset++;
+        int bits = (value.length - offset) * 8;
+        if (bits != 0) {
+            bits -= Integer.numberOfLeadingZeros(value[offset] & 0xFF) - 24;
+        }
+        out.write(bits >> 8);
+        out.write(bits);
+        out.write(value, offset, value.length - offset);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/PgpVerifier.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.pgp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.List;
+
+/**
+ * Verify detached signatures in jvm by keys loaded once.
+ * <p>
+ * Only RSA signatures can be verified now, others should be verified by gpg. So do signatures of revoked keys,
+ * the revocation time is not known.
+ */
+public class PgpVerifier {
+    private final PgpKeyRing keyRing;
+
+    public PgpVerifier(PgpKeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    /**
+     * @return {@code false} if the signature can't be verified in jvm (unknown or revoked key, unsupported algorithm)
+     * @throws SignatureException If the signature is bad, not of a binary document, or the key was not valid when signed
+     */
+    public boolean verify(File artifactFile, File signFile) throws Exception {
+        PgpSignature signature = readSignature(signFile);
+        if (!isSupported(signature)) return false;
+        return verify(signature, PgpHashAlgorithm.byId(signature.hashAlgorithm).digest(artifactFile));
+    }
+
+    /**
+     * Verify with a digest already updated with the signed data, e.g. computed while signing.
+     * {@code dataDigest} will be updated, pass a clone if it's still in use.
+     *
+     * @see #verify(File, File)
+     */
+    public boolean verify(PgpSignature signature, MessageDigest dataDigest) throws Exception {
+        if (!isSupported(signature)) return false;
+        PgpKey key = keyRing.findKey(signature.getIssuer());
+        if (key == null) return false;
+        if (signature.type != 0x00) {
+            throw new SignatureException("BAD signature: type 0x" + Integer.toHexString(signature.type) + " is not of a binary document, issued by " + key.getFingerprintHex());
+        }
+        checkValidity(key, signature.creationTime);
+
+        byte[] hashedPart = signature.hashedPart;
+        dataDigest.update(hashedPart);
+        int len = hashedPart.length;
+        dataDigest.update(new byte[]{4, (byte) 0xFF, (byte) (len >> 24), (byte) (len >> 16), (byte) (len >> 8), (byte) len});
+        byte[] hash = dataDigest.digest();
+        if ((((hash[0] & 0xFF) << 8) | (hash[1] & 0xFF)) != signature.hashLeft16) {
+            throw new SignatureException("BAD signature: digest mismatched, issued by " + key.getFingerprintHex());
+        }
+        return verifyHash(signature.getIssuer(), PgpHashAlgorithm.byId(signature.hashAlgorithm), hash, signature.values);
+    }
+
+    /**
+     * Verify signature values of the final {@code hash} (after the hashed part &amp; trailer), e.g. values returned
+     * by a signing daemon before the signature written.
+     *
+     * @return {@code false} if the signature can't be verified in jvm (unknown key or unsupported algorithm)
+     * @throws SignatureException If the signature is bad
+     */
+    public boolean verifyHash(byte[] issuer, PgpHashAlgorithm hashAlgorithm, byte[] hash, byte[][] values) throws Exception {
+        PgpKey key = keyRing.findKey(issuer);
+        if (key == null || key.algorithm != PgpSignatureBuilder.PUBKEY_RSA) return false;
+        if (values.length != 1) {
+            throw new SignatureException("BAD signature: " + values.length + " values for RSA key " + key.getFingerprintHex());
+        }
+        Signature rsa = Signature.getInstance("NONEwithRSA");
+        rsa.initVerify(key.getPublicKey());
+        rsa.update(hashAlgorithm.toDigestInfo(hash));
+        if (!rsa.verify(values[0])) {
+            throw new SignatureException("BAD signature issued by " + key.getFingerprintHex());
+        }
+        return true;
+    }
+
+    /**
+     * The key and its primary key must be created &amp; not expired when signed
+     */
+    private static void checkValidity(PgpKey key, long creationTime) throws SignatureException {
+        for (PgpKey k = key; k != null; k = k.primaryKey) {
+            if (creationTime < k.created) {
+                throw new SignatureException("BAD signature: created before key " + k.getFingerprintHex());
+            }
+            if (k.isExpired(creationTime)) {
+                throw new SignatureException("BAD signature: key " + k.getFingerprintHex() + " expired when signed");
+            }
+        }
+    }
+
+    /**
+     * Validity of revoked keys can't be established, revocations are not dated
+     */
+    private static boolean isValidityKnown(PgpKey key) {
+        return !key.revoked && (key.primaryKey == null || !key.primaryKey.revoked);
+    }
+
+    public boolean isSupported(PgpSignature signature) {
+        if (signature.publicKeyAlgorithm != PgpSignatureBuilder.PUBKEY_RSA) return false;
+        if (signature.getIssuer() == null) return false;
+        try {
+            PgpHashAlgorithm.byId(signature.hashAlgorithm);
+        } catch (IllegalArgumentException unsupported) {
+            return false;
+        }
+        PgpKey key = keyRing.findKey(signature.getIssuer());
+        return key != null && key.algorithm == PgpSignatureBuilder.PUBKEY_RSA && isValidityKnown(key);
+    }
+
+    public static PgpSignature readSignature(File signFile) throws IOException {
+        List<PgpPacket> packets = PgpPacket.readPackets(Files.readAllBytes(signFile.toPath()));
+        for (PgpPacket packet : packets) {
+            if (packet.tag != PgpPacket.TAG_SIGNATURE) continue;
+            PgpSignature signature = PgpSignature.parse(packet.body);
+            if (signature != null) return signature;
+        }
+        throw new IOException("No signature found in " + signFile);
+    }
+}
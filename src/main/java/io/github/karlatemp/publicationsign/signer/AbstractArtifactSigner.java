@@ -14,6 +14,8 @@ package io.github.karlatemp.publicationsign.signer;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
+import java.security.MessageDigest;
+import java.util.List;
 
 public abstract class AbstractArtifactSigner implements ArtifactSigner {
     public static class SerializableSignResult implements SignResult {
@@ -69,6 +71,37 @@ public abstract class AbstractArtifactSigner implements ArtifactSigner {
 
     protected abstract void sign0(Logger logger, File artifactFile, File signFile) throws Exception;
 
+    /**
+     * Same as {@link #sign0(Logger, File, File)}, and updates {@code digests} at the same pass if the artifact is read in jvm.
+     *
+     * @return {@code false} if {@code digests} not updated, the artifact will be read again for them
+     */
+    protected boolean sign0(Logger logger, File artifactFile, File signFile, MessageDigest[] digests) throws Exception {
+        MessageDigest digest = newSignatureDigest();
+        if (digest == null) {
+            sign0(logger, artifactFile, signFile);
+            return false;
+        }
+        ArtifactDigests.update(artifactFile, ArtifactDigests.with(digests, digest));
+        signDigest(logger, artifactFile, signFile, digest);
+        return true;
+    }
+
+    /**
+     * @return The digest signed by {@link #signDigest(Logger, File, File, MessageDigest)},
+     * {@code null} if the artifact is read by the signer itself
+     */
+    protected MessageDigest newSignatureDigest() throws Exception {
+        return null;
+    }
+
+    /**
+     * Sign {@code artifactFile} by {@code digest} from {@link #newSignatureDigest()}, already updated with the whole artifact
+     */
+    protected void signDigest(Logger logger, File artifactFile, File signFile, MessageDigest digest) throws Exception {
+        throw new UnsupportedOperationException(getClass().getName() + " doesn't sign digests");
+    }
+
     @Override
     public File signFile(Logger logger, File artifactFile) {
         return getSignFile(artifactFile, getSignFileExtension(artifactFile));
@@ -81,6 +114,13 @@ public abstract class AbstractArtifactSigner implements ArtifactSigner {
         return new SerializableSignResult(file, sf, ext);
     }
 
+    /**
+     * @return The cache for reusing signatures, {@code null} if cache disabled
+     */
+    protected SignatureCache getSignatureCache() {
+        return null;
+    }
+
     @Override
     public SignResult doSign(Logger logger, File artifactFile) throws Exception {
         if (!artifactFile.isFile()) {
@@ -92,9 +132,63 @@ public abstract class AbstractArtifactSigner implements ArtifactSigner {
         String ext = getSignFileExtension(artifactFile);
         File signFile = getSignFile(artifactFile, ext);
         if (signFile == null) return null;
+        List<String> checksums = getChecksums();
+        MessageDigest[] checksumDigests = new MessageDigest[checksums.size()];
+        for (int i = 0; i < checksumDigests.length; i++) {
+            checksumDigests[i] = ArtifactDigests.newChecksum(checksums.get(i));
+        }
+        boolean checksumsUpdated = checksumDigests.length == 0;
+
+        SignatureCache cache = getSignatureCache();
+        String fingerprint = cache == null ? null : getSigningKeyFingerprint();
+        String artifactSha256 = null;
+        // Updated at the same pass as the cache key, so a cache miss won't read the artifact again
+        MessageDigest signatureDigest = null;
+        if (fingerprint != null) {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            signatureDigest = newSignatureDigest();
+            MessageDigest[] digests = ArtifactDigests.with(checksumDigests, sha256);
+            if (signatureDigest != null) {
+                digests = ArtifactDigests.with(digests, signatureDigest);
+            }
+            ArtifactDigests.update(artifactFile, digests);
+            checksumsUpdated = true;
+            artifactSha256 = ArtifactDigests.hex(sha256.digest());
+            if (cache.restore(logger, artifactSha256, fingerprint, getConfigurationKey(), ext, signFile)) {
+                SignMetrics.cacheHit();
+                if (logger.isInfoEnabled()) {
+                    logger.info("Reused cached signature of " + artifactFile.getPath());
+                }
+                writeChecksums(artifactFile, signFile, checksums, checksumDigests);
+                return new SerializableSignResult(artifactFile, signFile, ext);
+            }
+        }
         //noinspection ResultOfMethodCallIgnored
         signFile.delete(); // Delete old sign result
-        sign0(logger, artifactFile, signFile);
+        if (signatureDigest != null) {
+            signDigest(logger, artifactFile, signFile, signatureDigest);
+        } else if (checksumsUpdated) {
+            sign0(logger, artifactFile, signFile);
+        } else if (!sign0(logger, artifactFile, signFile, checksumDigests)) {
+            ArtifactDigests.update(artifactFile, checksumDigests);
+        }
+        if (artifactSha256 != null) {
+            cache.store(logger, artifactSha256, fingerprint, getConfigurationKey(), ext, signFile);
+        }
+        writeChecksums(artifactFile, signFile, checksums, checksumDigests);
         return new SerializableSignResult(artifactFile, signFile, ext);
     }
+
+    private static void writeChecksums(File artifactFile, File signFile, List<String> checksums, MessageDigest[] artifactDigests) throws Exception {
+        if (checksums.isEmpty()) return;
+        MessageDigest[] signDigests = new MessageDigest[checksums.size()];
+        for (int i = 0; i < signDigests.length; i++) {
+            signDigests[i] = ArtifactDigests.newChecksum(checksums.get(i));
+        }
+        ArtifactDigests.update(signFile, signDigests);
+        for (int i = 0; i < signDigests.length; i++) {
+            ArtifactDigests.writeChecksum(artifactFile, checksums.get(i), artifactDigests[i]);
+            ArtifactDigests.writeChecksum(signFile, checksums.get(i), signDigests[i]);
+        }
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/ArtifactDigests.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signer;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Read artifacts once, feeding all digests (signature hash, cache key, checksums) at the same pass.
+ * <p>
+ * Checksums are named by the extensions of checksum files: {@code md5}, {@code sha1}, {@code sha256}, {@code sha512}
+ */
+public class ArtifactDigests {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * Update all {@code digests} by the content of {@code file}, {@code null} elements are skipped
+     */
+    public static void update(File file, MessageDigest... digests) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer buffer = BUFFER.get();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                for (MessageDigest digest : digests) {
+                    if (digest == null) continue;
+                    digest.update(buffer.duplicate());
+                }
+                buffer.clear();
+            }
+        }
+        SignMetrics.record(SignMetrics.Phase.HASH, start);
+    }
+
+    /**
+     * @return A new array of {@code digests} and {@code more}
+     */
+    public static MessageDigest[] with(MessageDigest[] digests, MessageDigest... more) {
+        MessageDigest[] result = new MessageDigest[digests.length + more.length];
+        System.arraycopy(digests, 0, result, 0, digests.length);
+        System.arraycopy(more, 0, result, digests.length, more.length);
+        return result;
+    }
+
+    public static MessageDigest newChecksum(String checksum) throws NoSuchAlgorithmException {
+        switch (checksum.toLowerCase(Locale.ROOT)) {
+            case "md5":
+                return MessageDigest.getInstance("MD5");
+            case "sha1":
+                return MessageDigest.getInstance("SHA-1");
+            case "sha256":
+                return MessageDigest.getInstance("SHA-256");
+            case "sha512":
+                return MessageDigest.getInstance("SHA-512");
+            default:
+                throw new NoSuchAlgorithmException("Unsupported checksum " + checksum + ", supported: md5, sha1, sha256, sha512");
+        }
+    }
+
+    public static File checksumFile(File file, String checksum) {
+        return new File(file.getPath() + "." + checksum);
+    }
+
+    public static String hex(byte[] digest) {
+        return String.format("%0" + (digest.length * 2) + "x", new BigInteger(1, digest));
+    }
+
+    public static void writeChecksum(File file, String checksum, MessageDigest digest) throws IOException {
+        Files.write(checksumFile(file, checksum).toPath(), hex(digest.digest()).getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -15,6 +15,10 @@ import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ArtifactSigner {
     SignResult getSignFile(File file);
@@ -31,9 +35,118 @@ public interface ArtifactSigner {
 
     SignResult doSign(Logger logger, File artifactFile) throws Exception;
 
+    /**
+     * Sign all {@code artifactFiles}, failures are reported per artifact.
+     * <p>
+     * Signers faster in batches (e.g. pipelining requests of one connection) could override this. By default every
+     * artifact is signed by {@link #doSign(Logger, File)} through {@code executor}.
+     *
+     * @return Results in the same order of {@code artifactFiles}
+     */
+    default List<CompletableFuture<SignResult>> signBatch(Logger logger, List<File> artifactFiles, SignExecutor executor) {
+        List<CompletableFuture<SignResult>> results = new ArrayList<>(artifactFiles.size());
+        for (File artifactFile : artifactFiles) {
+            results.add(executor.submit(artifactFile, () -> doSign(logger, artifactFile)));
+        }
+        return results;
+    }
+
     File signFile(Logger logger, File artifactFile);
 
+    /**
+     * Resolve project dependent states, e.g. the working dir. Called at configuration time.
+     * <p>
+     * Signers are stored by configuration cache after configured, so must not keep references of {@link Project}
+     */
+    default void configure(Project project) throws Exception {
+    }
+
+    /**
+     * Prepare for signing, e.g. importing keys. Called at execution time, before signing.
+     */
+    default void initialize(Logger logger) throws Exception {
+    }
+
+    /**
+     * Called at configuration time instead of {@link #configure(Project)} if overridden, sign tasks of such signers
+     * are not compatible with configuration cache.
+     *
+     * @deprecated Not compatible with configuration cache, use {@link #configure(Project)} and {@link #initialize(Logger)}
+     */
+    @Deprecated
     default void initialize(Project project) throws Exception {
+        configure(project);
+        initialize(project.getLogger());
+    }
+
+    /**
+     * Release resources after the build finished
+     */
+    default void close() throws Exception {
+    }
+
+    /**
+     * Max count of {@link #doSign(Logger, File)} running at the same time.
+     * <p>
+     * Signing will be run one by one if value &lt;= 1
+     */
+    default int getMaxParallelSigns() {
+        return 1;
+    }
+
+    /**
+     * The fingerprint of key used for signing, in upper hex.
+     * <p>
+     * Signatures can't be cached if fingerprint is unknown ({@code null})
+     */
+    default String getSigningKeyFingerprint() throws Exception {
+        return null;
+    }
+
+    /**
+     * The fingerprint of key used for signing, resolved from the configuration (e.g. key files) without initializing.
+     * Called at configuration time, for the build cache key of sign tasks.
+     *
+     * @return {@code null} if unknown before initialized, sign tasks are not stored in build cache then
+     */
+    default String getConfiguredSigningKeyFingerprint() {
+        return null;
+    }
+
+    /**
+     * Describes the configuration affecting signatures, e.g. the signer type &amp; digest algorithm.
+     * <p>
+     * Used as an input of sign tasks, so must not contain machine specific values like absolute paths
+     */
+    default String getConfigurationKey() {
+        return getClass().getName();
+    }
+
+    /**
+     * Identifies signers of same configuration (including machine specific values, e.g. working dir), which could be
+     * initialized once and reused by later builds in the same Gradle daemon.
+     *
+     * @return {@code null} if not reusable
+     */
+    default String getPoolKey() {
+        return null;
+    }
+
+    /**
+     * Check if states initialized by a previous build still valid, e.g. key files not changed.
+     * Otherwise the pooled signer will be closed and re-initialized.
+     */
+    default boolean isPoolValid() {
+        return true;
+    }
+
+    /**
+     * Checksum files written along with signatures for artifacts and signatures, e.g. {@code md5}, {@code sha1}.
+     *
+     * @see ArtifactDigests#newChecksum(String)
+     */
+    default List<String> getChecksums() {
+        return Collections.emptyList();
     }
 
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignEvents.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signer;
+
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+
+/**
+ * Dispatches events to {@link SignListener}s.
+ * <p>
+ * Events of signing one artifact are bound to the signing thread between {@link #begin(SignListener[])} and
+ * {@link #end()}, so signers can report verifying by {@link #verifyStarted(ArtifactSigner, File)} without knowing
+ * listeners. Nothing is allocated &amp; bound if no listeners registered.
+ */
+public final class SignEvents {
+    private static final ThreadLocal<SignListener[]> CURRENT = new ThreadLocal<>();
+
+    private SignEvents() {
+    }
+
+    /**
+     * Bind {@code listeners} to current thread
+     *
+     * @return {@code false} if nothing bound, no need to {@link #end()}
+     */
+    public static boolean begin(SignListener[] listeners) {
+        if (listeners == null || listeners.length == 0) return false;
+        CURRENT.set(listeners);
+        return true;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    private static void failed(SignListener listener, RuntimeException e) {
+        Logging.getLogger(SignListener.class).warn("Exception in sign listener " + listener, e);
+    }
+
+    public static void initializeStarted(SignListener[] listeners, ArtifactSigner signer) {
+        for (SignListener listener : listeners) {
+            try {
+                listener.initializeStarted(signer);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    public static void initializeFinished(SignListener[] listeners, ArtifactSigner signer, long nanos, Throwable failure) {
+        for (SignListener listener : listeners) {
+            try {
+                listener.initializeFinished(signer, nanos, failure);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    public static void signStarted(SignListener[] listeners, ArtifactSigner signer, File artifactFile) {
+        for (SignListener listener : listeners) {
+            try {
+                listener.signStarted(signer, artifactFile);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    public static void signFinished(
+            SignListener[] listeners, ArtifactSigner signer, File artifactFile,
+            long bytes, long nanos, ArtifactSigner.SignResult result, Throwable failure
+    ) {
+        for (SignListener listener : listeners) {
+            try {
+                listener.signFinished(signer, artifactFile, bytes, nanos, result, failure);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    public static void verifyStarted(ArtifactSigner signer, File artifactFile) {
+        SignListener[] listeners = CURRENT.get();
+        if (listeners == null) return;
+        for (SignListener listener : listeners) {
+            try {
+                listener.verifyStarted(signer, artifactFile);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    public static void verifyFinished(ArtifactSigner signer, File artifactFile, long nanos, Throwable failure) {
+        SignListener[] listeners = CURRENT.get();
+        if (listeners == null) return;
+        for (SignListener listener : listeners) {
+            try {
+                listener.verifyFinished(signer, artifactFile, nanos, failure);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignExecutor.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signer;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs signing of artifacts for {@link ArtifactSigner#signBatch(org.gradle.api.logging.Logger, java.util.List, SignExecutor)}.
+ * <p>
+ * The build wide concurrency limit, metrics &amp; listeners are applied to every submitted signing.
+ */
+public interface SignExecutor {
+    /**
+     * Run {@code signing} of {@code artifactFile}, maybe on another thread.
+     *
+     * @return Completed exceptionally if signing failed
+     */
+    CompletableFuture<ArtifactSigner.SignResult> submit(File artifactFile, Callable<ArtifactSigner.SignResult> signing);
+}
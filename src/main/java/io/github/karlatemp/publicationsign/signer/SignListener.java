@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignListener.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signer;
+
+import java.io.File;
+
+/**
+ * Callbacks of signing, registered by {@link io.github.karlatemp.publicationsign.PublicationSignExtension#addListener(SignListener)}.
+ * <p>
+ * Called on the signing threads, maybe concurrently. Exceptions thrown by listeners are logged and ignored.
+ * Listeners are stored by configuration cache with sign tasks, so should be serializable.
+ */
+public interface SignListener {
+    default void initializeStarted(ArtifactSigner signer) {
+    }
+
+    /**
+     * @param failure {@code null} if succeed
+     */
+    default void initializeFinished(ArtifactSigner signer, long nanos, Throwable failure) {
+    }
+
+    default void signStarted(ArtifactSigner signer, File artifactFile) {
+    }
+
+    /**
+     * @param result  {@code null} if failed or skipped
+     * @param failure {@code null} if succeed or skipped
+     */
+    default void signFinished(ArtifactSigner signer, File artifactFile, long bytes, long nanos, ArtifactSigner.SignResult result, Throwable failure) {
+    }
+
+    /**
+     * Called by signers verifying created signatures
+     */
+    default void verifyStarted(ArtifactSigner signer, File artifactFile) {
+    }
+
+    /**
+     * @param failure {@code null} if the signature is good
+     */
+    default void verifyFinished(ArtifactSigner signer, File artifactFile, long nanos, Throwable failure) {
+    }
+}
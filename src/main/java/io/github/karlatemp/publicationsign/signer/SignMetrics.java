@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignMetrics.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signer;
+
+import java.io.File;
+
+/**
+ * Time spent in each phase of signing one artifact.
+ * <p>
+ * Bound to the signing thread between {@link #begin(File)} and {@link #end(boolean)}, phases are recorded by signers
+ * with {@link #record(Phase, long)}. Recording is no-op if no metrics bound.
+ */
+public final class SignMetrics {
+    public enum Phase {
+        /**
+         * Importing keys, starting agent, ...
+         */
+        INITIALIZE,
+        /**
+         * Reading artifacts for signatures, checksums &amp; cache keys
+         */
+        HASH,
+        SIGN,
+        VERIFY,
+    }
+
+    private static final ThreadLocal<SignMetrics> CURRENT = new ThreadLocal<>();
+
+    public final File artifact;
+    public final long size;
+    public final long startedAt = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final long[] phaseNanos = new long[Phase.values().length];
+    public long totalNanos;
+    public int processes;
+    public boolean cacheHit;
+    public boolean succeed;
+
+    private SignMetrics(File artifact) {
+        this.artifact = artifact;
+        this.size = artifact.length();
+    }
+
+    /**
+     * Start recording metrics of {@code artifact} in current thread
+     */
+    public static SignMetrics begin(File artifact) {
+        SignMetrics metrics = new SignMetrics(artifact);
+        CURRENT.set(metrics);
+        return metrics;
+    }
+
+    public void end(boolean succeed) {
+        this.totalNanos = System.nanoTime() - startNanos;
+        this.succeed = succeed;
+        CURRENT.remove();
+    }
+
+    /**
+     * Add the time from {@code startNanos} ({@link System#nanoTime()}) to {@code phase}
+     */
+    public static void record(Phase phase, long startNanos) {
+        SignMetrics metrics = CURRENT.get();
+        if (metrics != null) {
+            metrics.phaseNanos[phase.ordinal()] += System.nanoTime() - startNanos;
+        }
+    }
+
+    public static void processSpawned() {
+        SignMetrics metrics = CURRENT.get();
+        if (metrics != null) metrics.processes++;
+    }
+
+    static void cacheHit() {
+        SignMetrics metrics = CURRENT.get();
+        if (metrics != null) metrics.cacheHit = true;
+    }
+
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignatureCache.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signer;
+
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Content-addressed signature storage, keyed by the SHA-256 of artifact, the fingerprint of signing key and the signer configuration.
+ * <p>
+ * Entries are written to a temp file first then moved into place, so concurrent writers never expose a partial
+ * signature. Entries older than {@code maxAge} or exceeding {@code maxSize} (the least recently used first) will be
+ * evicted when the cache is used at the first time.
+ */
+public class SignatureCache {
+    private final File directory;
+    private final long maxSize;
+    private final long maxAge;
+    private volatile boolean evicted;
+
+    /**
+     * @param maxSize Max bytes of all entries, {@code <= 0} for unlimited
+     * @param maxAge  Max milliseconds after entry last used, {@code <= 0} for unlimited
+     */
+    public SignatureCache(File directory, long maxSize, long maxAge) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param configuration The {@link ArtifactSigner#getConfigurationKey()}, signatures of other hash algorithms or
+     *                      arguments aren't reused
+     */
+    private File entry(String artifactSha256, String keyFingerprint, String configuration, String signExt) {
+        return new File(
+                new File(directory, artifactSha256.substring(0, 2)),
+                artifactSha256 + "-" + keyFingerprint + "-" + configurationHash(configuration) + "." + signExt
+        );
+    }
+
+    private static String configurationHash(String configuration) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return ArtifactDigests.hex(sha256.digest(configuration.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Restore cached signature to {@code signFile}
+     *
+     * @return {@code false} if not cached
+     */
+    public boolean restore(Logger logger, String artifactSha256, String keyFingerprint, String configuration, String signExt, File signFile) {
+        evictIfNeeded(logger);
+        File entry = entry(artifactSha256, keyFingerprint, configuration, signExt);
+        if (!entry.isFile()) return false;
+        Path target = signFile.toPath();
+        Path tmp = target.resolveSibling(signFile.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try {
+                Files.copy(entry.toPath(), tmp);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            // Mark as recently used
+            //noinspection ResultOfMethodCallIgnored
+            entry.setLastModified(System.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            // Evicted by another process or broken, re-sign it
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to restore cached signature " + entry, e);
+            }
+            return false;
+        }
+    }
+
+    public void store(Logger logger, String artifactSha256, String keyFingerprint, String configuration, String signExt, File signFile) {
+        File entry = entry(artifactSha256, keyFingerprint, configuration, signExt);
+        try {
+            Files.createDirectories(entry.getParentFile().toPath());
+            Path tmp = entry.toPath().resolveSibling(entry.getName() + "." + UUID.randomUUID() + ".tmp");
+            Files.copy(signFile.toPath(), tmp);
+            try {
+                Files.move(tmp, entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Failed to store signature " + signFile + " to cache", e);
+            }
+        }
+    }
+
+    private void evictIfNeeded(Logger logger) {
+        if (evicted) return;
+        synchronized (this) {
+            if (evicted) return;
+            evicted = true;
+            try {
+                evict();
+            } catch (IOException e) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Failed to evict signature cache " + directory, e);
+                }
+            }
+        }
+    }
+
+    public void evict() throws IOException {
+        if (!directory.isDirectory()) return;
+        List<Path> entries = new ArrayList<>();
+        List<BasicFileAttributes> attributes = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                FileTime lastModified = attrs.lastModifiedTime();
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    // Leaked by killed writers
+                    if (now - lastModified.toMillis() > 3600_000L) {
+                        Files.deleteIfExists(file);
+                    }
+                } else if (maxAge > 0 && now - lastModified.toMillis() > maxAge) {
+                    Files.deleteIfExists(file);
+                } else {
+                    entries.add(file);
+                    attributes.add(attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (maxSize <= 0) return;
+        long total = 0;
+        for (BasicFileAttributes attribute : attributes) {
+            total += attribute.size();
+        }
+        if (total <= maxSize) return;
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> attributes.get(a).lastModifiedTime().compareTo(attributes.get(b).lastModifiedTime()));
+        for (Integer index : order) {
+            if (total <= maxSize) break;
+            Files.deleteIfExists(entries.get(index));
+            total -= attributes.get(index).size();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/SignedManifest.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signer;
+
+import io.github.karlatemp.publicationsign.pgp.PgpKeyRing;
+import io.github.karlatemp.publicationsign.pgp.PgpVerifier;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+import java.util.*;
+
+/**
+ * SHA-256 digests of all artifacts of a publication, signed once instead of signing every artifact.
+ * <p>
+ * Written in the format of `sha256sum`, one {@code <sha256 hex>  <file name>} per line, so it also can be checked
+ * by {@code sha256sum -c}.
+ */
+public class SignedManifest {
+    private final Map<String, String> digests;
+
+    private SignedManifest(Map<String, String> digests) {
+        this.digests = digests;
+    }
+
+    private static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ArtifactDigests.update(file, digest);
+        return ArtifactDigests.hex(digest.digest());
+    }
+
+    /**
+     * Digest {@code files}, entries are named by file names
+     */
+    public static SignedManifest of(Collection<File> files) throws IOException {
+        Map<String, File> named = new LinkedHashMap<>();
+        for (File file : files) {
+            if (named.put(file.getName(), file) != null) {
+                throw new IllegalArgumentException("Duplicated file name " + file.getName() + " in manifest");
+            }
+        }
+        return of(named);
+    }
+
+    /**
+     * Digest {@code files}, entries are named by the keys, e.g. names of published files
+     * ({@code <artifactId>-<version>[-<classifier>].<extension>}) instead of names in the build dir
+     */
+    public static SignedManifest of(Map<String, File> files) throws IOException {
+        Map<String, String> digests = new TreeMap<>();
+        for (Map.Entry<String, File> entry : files.entrySet()) {
+            digests.put(entry.getKey(), sha256(entry.getValue()));
+        }
+        return new SignedManifest(digests);
+    }
+
+    public static SignedManifest read(File manifest) throws IOException {
+        Map<String, String> digests = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                int split = line.indexOf("  ");
+                if (split == -1) {
+                    throw new IOException("Malformed manifest line in " + manifest + ": " + line);
+                }
+                digests.put(line.substring(split + 2), line.substring(0, split));
+            }
+        }
+        return new SignedManifest(digests);
+    }
+
+    public void write(File manifest) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : digests.entrySet()) {
+            content.append(entry.getValue()).append("  ").append(entry.getKey()).append('\n');
+        }
+        Files.write(manifest.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * File name -&gt; SHA-256 hex
+     */
+    public Map<String, String> getDigests() {
+        return Collections.unmodifiableMap(digests);
+    }
+
+    /**
+     * Check {@code files} (any subset of the publication) against this manifest
+     *
+     * @return Descriptions of mismatched or unknown files, empty if all matched
+     */
+    public List<String> verify(Collection<File> files) throws IOException {
+        List<String> problems = new ArrayList<>();
+        for (File file : files) {
+            String expected = digests.get(file.getName());
+            if (expected == null) {
+                problems.add(file + ": not in manifest");
+            } else if (!expected.equalsIgnoreCase(sha256(file))) {
+                problems.add(file + ": sha256 mismatch");
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Check the signature of {@code manifest} by {@code publicKeys}, then {@code files} against the manifest
+     *
+     * @return Descriptions of problems, empty if the signature is good and all files matched
+     */
+    public static List<String> verify(File manifest, File signature, Collection<File> publicKeys, Collection<File> files) throws Exception {
+        try {
+            if (!new PgpVerifier(PgpKeyRing.load(publicKeys)).verify(manifest, signature)) {
+                return Collections.singletonList(manifest + ": signature can't be verified in jvm, please verify by gpg");
+            }
+        } catch (SignatureException e) {
+            return Collections.singletonList(manifest + ": bad signature");
+        }
+        return read(manifest).verify(files);
+    }
+}
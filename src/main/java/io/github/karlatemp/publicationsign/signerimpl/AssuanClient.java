@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/AssuanClient.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A minimal client of the Assuan protocol, used for talking with gpg-agent
+ *
+ * @see <a href="https://www.gnupg.org/documentation/manuals/assuan/">Assuan</a>
+ */
+public class AssuanClient implements Closeable {
+    private static ScheduledExecutorService watchdog;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final Closeable resource;
+
+    public AssuanClient(InputStream in, OutputStream out, Closeable resource) {
+        this.in = new BufferedInputStream(in);
+        this.out = new BufferedOutputStream(out);
+        this.resource = resource;
+    }
+
+    public static class AssuanException extends IOException {
+        public final String response;
+
+        public AssuanException(String command, String response) {
+            super("`" + command + "` failed: " + response);
+            this.response = response;
+        }
+    }
+
+    /**
+     * Connect to an Assuan server listening on {@code socket}.
+     * <p>
+     * Supports the socket emulation of Windows (a file contains port &amp; nonce) and,
+     * when running on Java 16+, unix domain sockets.
+     *
+     * @return {@code null} if no way to connect to the socket.
+     */
+    public static AssuanClient connect(File socket) throws IOException {
+        AssuanClient client;
+        if (socket.isFile()) {
+            client = connectEmulated(socket);
+        } else {
+            client = connectUnixDomain(socket);
+        }
+        if (client == null) return null;
+        try {
+            client.readResponse("<connect>");
+        } catch (IOException e) {
+            client.close();
+            throw e;
+        }
+        return client;
+    }
+
+    private static AssuanClient connectEmulated(File socket) throws IOException {
+        byte[] content = Files.readAllBytes(socket.toPath());
+        int lf = 0;
+        while (lf < content.length && content[lf] != '\n') lf++;
+        if (content.length < lf + 17) {
+            throw new IOException("Bad socket emulation file " + socket);
+        }
+        int port = Integer.parseInt(new String(content, 0, lf, StandardCharsets.US_ASCII).trim());
+        Socket connection = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            OutputStream out = connection.getOutputStream();
+            out.write(content, lf + 1, 16);
+            out.flush();
+            return new AssuanClient(connection.getInputStream(), out, connection);
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private static AssuanClient connectUnixDomain(File socket) throws IOException {
+        ProtocolFamily unix;
+        SocketAddress address;
+        try {
+            unix = StandardProtocolFamily.valueOf("UNIX");
+            address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", String.class)
+                    .invoke(null, socket.getPath());
+        } catch (Exception ignored) {
+            return null; // Java 15-
+        }
+        SocketChannel channel;
+        try {
+            channel = (SocketChannel) SocketChannel.class
+                    .getMethod("open", ProtocolFamily.class)
+                    .invoke(null, unix);
+        } catch (Exception e) {
+            return null;
+        }
+        try {
+            channel.connect(address);
+            return new AssuanClient(Channels.newInputStream(channel), Channels.newOutputStream(channel), channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Send commands one by one.
+     *
+     * @return The data responded by the last command
+     */
+    public synchronized byte[] transact(List<String> commands) throws IOException {
+        byte[] data = null;
+        for (String command : commands) {
+            out.write(command.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+            out.flush();
+            data = readResponse(command);
+        }
+        return data;
+    }
+
+    /**
+     * Same as {@link #transact(List)}, the connection is aborted if not responded in {@code timeout} milliseconds
+     *
+     * @param timeout &lt;= 0 for no timeout
+     * @throws GpgTimeoutException If timed out, the connection can't be used anymore
+     */
+    public synchronized byte[] transact(List<String> commands, long timeout) throws IOException {
+        if (timeout <= 0) return transact(commands);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> watchdog = watch(timeout, () -> {
+            timedOut.set(true);
+            abort();
+        });
+        try {
+            return transact(commands);
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw new GpgTimeoutException("gpg-agent not responded `" + commands.get(commands.size() - 1) + "` in " + timeout + "ms");
+            }
+            throw e;
+        } finally {
+            watchdog.cancel(false);
+        }
+    }
+
+    /**
+     * Run {@code onTimeout} after {@code timeout} milliseconds, unless cancelled
+     */
+    private static synchronized ScheduledFuture<?> watch(long timeout, Runnable onTimeout) {
+        if (watchdog == null) {
+            watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "PublicationSign gpg-agent watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return watchdog.schedule(onTimeout, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Read the responses of a command until OK or ERR
+     */
+    byte[] readResponse(String command) throws IOException {
+        return readResponse(in, out, command);
+    }
+
+    static byte[] readResponse(InputStream in, OutputStream out, String command) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            line.reset();
+            while (true) {
+                int next = in.read();
+                if (next == -1) {
+                    throw new EOFException("Assuan connection closed while waiting response of `" + command + "`");
+                }
+                if (next == '\n') break;
+                line.write(next);
+            }
+            byte[] bytes = line.toByteArray();
+            if (startsWith(bytes, "OK")) {
+                return data.toByteArray();
+            }
+            if (startsWith(bytes, "ERR")) {
+                throw new AssuanException(command, new String(bytes, StandardCharsets.UTF_8));
+            }
+            if (startsWith(bytes, "D")) {
+                unescape(bytes, 2, data);
+                continue;
+            }
+            if (startsWith(bytes, "INQUIRE")) {
+                if (out == null) {
+                    throw new AssuanException(command, new String(bytes, StandardCharsets.UTF_8));
+                }
+                // We can't answer any inquire. e.g. passphrase
+                out.write("CAN\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+            // S (status) and # (comment) lines are ignored
+        }
+    }
+
+    private static boolean startsWith(byte[] line, String keyword) {
+        int length = keyword.length();
+        if (line.length < length) return false;
+        for (int i = 0; i < length; i++) {
+            if (line[i] != keyword.charAt(i)) return false;
+        }
+        return line.length == length || line[length] == ' ';
+    }
+
+    private static void unescape(byte[] line, int offset, ByteArrayOutputStream result) {
+        for (int i = offset; i < line.length; i++) {
+            byte b = line[i];
+            if (b == '%' && i + 2 < line.length) {
+                result.write(Character.digit(line[i + 1], 16) << 4 | Character.digit(line[i + 2], 16));
+                i += 2;
+            } else {
+                result.write(b);
+            }
+        }
+    }
+
+    /**
+     * Hex string for Assuan command arguments
+     */
+    public static String hex(byte[] data) {
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return sb.toString();
+    }
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Close the connection without waiting for pending commands, which will fail
+     */
+    public void abort() {
+        try {
+            resource.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (this) {
+                out.write("BYE\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+        } catch (IOException ignored) {
+        } finally {
+            resource.close();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/GpgAgentSignerImpl.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import io.github.karlatemp.publicationsign.GpgSignerWorkflow;
+import io.github.karlatemp.publicationsign.pgp.PgpHashAlgorithm;
+import io.github.karlatemp.publicationsign.pgp.PgpSignatureBuilder;
+import io.github.karlatemp.publicationsign.signer.AbstractArtifactSigner;
+import io.github.karlatemp.publicationsign.signer.SignMetrics;
+import io.github.karlatemp.publicationsign.signer.SignatureCache;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Sign artifacts by gpg-agent directly.
+ * <p>
+ * Artifacts are hashed in JVM, only the hash will be sent to gpg-agent (PKSIGN) over a long-lived Assuan connection.
+ * Then the OpenPGP signature packet will be written by ourselves.
+ * <p>
+ * The homedir and keys are prepared by {@link GpgSignerImpl#initialize(Logger)}.
+ * <p>
+ * Connecting to the agent socket requires Java 16+ (unix domain socket) or Windows (socket emulation).
+ * Otherwise, one `gpg-connect-agent` will be spawned per signature, still avoid reloading keyring by `gpg`.
+ */
+public class GpgAgentSignerImpl extends AbstractArtifactSigner {
+    private final GpgSignerWorkflow workflow;
+    private final GpgSignerImpl gpg;
+
+    private transient GpgSignerImpl.SigningKey signingKey;
+    private transient SignatureCache signatureCache;
+    private transient AssuanClient agent;
+    private transient boolean noDirectConnection;
+
+    public GpgAgentSignerImpl(GpgSignerWorkflow workflow) {
+        this.workflow = workflow;
+        this.gpg = new GpgSignerImpl(workflow);
+    }
+
+    @Override
+    public void configure(Project project) throws Exception {
+        gpg.configure(project);
+    }
+
+    @Override
+    public synchronized void initialize(Logger logger) throws Exception {
+        gpg.initialize(logger);
+        if (signingKey == null) {
+            signingKey = gpg.findSigningKey(logger);
+            signatureCache = workflow.newSignatureCache();
+            if (logger.isInfoEnabled()) {
+                logger.info("[GPG Agent Signer] Using key " + signingKey);
+            }
+        }
+        if (agent == null && !noDirectConnection) {
+            gpg.startAgent(logger);
+            connectAgent(logger);
+        }
+    }
+
+    private synchronized void connectAgent(Logger logger) throws Exception {
+        gpg.queryTool(logger, "gpgconf", "--launch", "gpg-agent");
+        File socket = new File(unescape(
+                gpg.queryTool(logger, "gpgconf", "--list-dirs", "agent-socket").trim()
+        ));
+        if (!socket.isAbsolute()) {
+            socket = new File(gpg.getRunDir(), socket.getPath());
+        }
+        agent = AssuanClient.connect(socket);
+        if (agent == null) {
+            noDirectConnection = true;
+            if (logger.isInfoEnabled()) {
+                logger.info("[GPG Agent Signer] Unix domain socket not supported by current jvm, fallback to gpg-connect-agent");
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (agent != null) {
+            try {
+                agent.close();
+            } catch (IOException ignored) {
+            }
+            agent = null;
+        }
+        gpg.close();
+    }
+
+    static String unescape(String path) {
+        // gpgconf escapes special chars as %XX
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '%' && i + 2 < path.length()) {
+                result.append((char) Integer.parseInt(path.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    @Override
+    protected SignatureCache getSignatureCache() {
+        return signatureCache;
+    }
+
+    @Override
+    public String getSigningKeyFingerprint() {
+        GpgSignerImpl.SigningKey key = this.signingKey;
+        return key == null ? null : key.fingerprint;
+    }
+
+    @Override
+    public String getConfiguredSigningKeyFingerprint() {
+        return gpg.getConfiguredSigningKeyFingerprint();
+    }
+
+    @Override
+    public String getPoolKey() {
+        return getClass().getName() + " " + workflow.getPoolKey();
+    }
+
+    @Override
+    public boolean isPoolValid() {
+        return gpg.isPoolValid();
+    }
+
+    @Override
+    public String getConfigurationKey() {
+        return workflow.getConfigurationKey();
+    }
+
+    @Override
+    public List<String> getChecksums() {
+        return workflow.checksums == null ? Collections.emptyList() : workflow.checksums;
+    }
+
+    @Override
+    protected String getSignFileExtension(File artifactFile) {
+        return "asc";
+    }
+
+    @Override
+    protected void sign0(Logger logger, File artifactFile, File signFile) throws Exception {
+        sign0(logger, artifactFile, signFile, new MessageDigest[0]);
+    }
+
+    @Override
+    protected MessageDigest newSignatureDigest() throws Exception {
+        return PgpHashAlgorithm.byName(workflow.digestAlgorithm).newDigest();
+    }
+
+    @Override
+    protected void signDigest(Logger logger, File artifactFile, File signFile, MessageDigest digest) throws Exception {
+        GpgSignerImpl.SigningKey key = this.signingKey;
+        PgpHashAlgorithm hashAlgorithm = PgpHashAlgorithm.byName(workflow.digestAlgorithm);
+        PgpSignatureBuilder builder = new PgpSignatureBuilder(
+                key.algorithm, hashAlgorithm, key.fingerprintBytes(),
+                System.currentTimeMillis() / 1000
+        );
+        byte[] hash = builder.finish(digest);
+        long start = System.nanoTime();
+        byte[][] signature = signHash(logger, hashAlgorithm, hash);
+        SignMetrics.record(SignMetrics.Phase.SIGN, start);
+        Files.write(signFile.toPath(), builder.buildArmored(hash, signature));
+    }
+
+    GpgSignerImpl.SigningKey getSigningKey() {
+        return signingKey;
+    }
+
+    /**
+     * Public keys of the signing key exported by `gpg --export`
+     */
+    byte[] exportPublicKey(Logger logger) throws Exception {
+        return gpg.exchangeTool(logger, "gpg", null, "--batch", "--export", signingKey.fingerprint);
+    }
+
+    /**
+     * Sign the final hash of an OpenPGP signature
+     *
+     * @return MPIs of the signature value
+     */
+    byte[][] signHash(Logger logger, PgpHashAlgorithm hashAlgorithm, byte[] hash) throws Exception {
+        GpgSignerImpl.SigningKey key = this.signingKey;
+        for (int attempt = 0; ; attempt++) {
+            int generation = gpg.getAgentGeneration();
+            try {
+                return parseSignatureValue(key.algorithm, pksign(logger, key, hashAlgorithm, hash));
+            } catch (AssuanClient.AssuanException e) {
+                // Rejected by the agent, e.g. no secret key
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= workflow.commandRetries) throw e;
+                if (logger.isWarnEnabled()) {
+                    logger.warn("[GPG Agent Signer] Failed to sign, retrying with restarted gpg-agent", e);
+                }
+                gpg.backoff(attempt);
+                reconnect(logger, generation);
+            }
+        }
+    }
+
+    /**
+     * Restart the agent (killed, wedged, ...) and connect again, unless done by another signing thread after {@code generation}
+     */
+    private synchronized void reconnect(Logger logger, int generation) throws Exception {
+        if (generation != gpg.getAgentGeneration()) return;
+        if (agent != null) {
+            agent.abort();
+            agent = null;
+        }
+        gpg.restartAgent(logger, generation);
+        if (!noDirectConnection) {
+            connectAgent(logger);
+        }
+    }
+
+    private byte[] pksign(Logger logger, GpgSignerImpl.SigningKey key, PgpHashAlgorithm hashAlgorithm, byte[] hash) throws Exception {
+        List<String> commands = Arrays.asList(
+                "SIGKEY " + key.keygrip,
+                "SETHASH " + hashAlgorithm.id + " " + AssuanClient.hex(hash),
+                "PKSIGN"
+        );
+        AssuanClient agent;
+        synchronized (this) {
+            agent = this.agent;
+        }
+        if (agent != null) {
+            return agent.transact(commands, workflow.commandTimeout);
+        }
+
+        StringBuilder input = new StringBuilder();
+        for (String command : commands) {
+            input.append(command).append('\n');
+        }
+        input.append("/bye\n");
+        byte[] output = gpg.exchangeTool(logger, "gpg-connect-agent", input.toString().getBytes(StandardCharsets.UTF_8));
+        InputStream responses = new ByteArrayInputStream(output);
+        byte[] data = null;
+        for (String command : commands) {
+            data = AssuanClient.readResponse(responses, null, command);
+        }
+        return data;
+    }
+
+    /**
+     * Extract MPIs from the S-expression responded by PKSIGN, e.g. {@code (7:sig-val(3:rsa(1:s256:...)))}
+     */
+    static byte[][] parseSignatureValue(int algorithm, byte[] sexp) {
+        Map<String, byte[]> values = new HashMap<>();
+        Deque<List<byte[]>> stack = new ArrayDeque<>();
+        List<byte[]> current = null;
+        int i = 0;
+        while (i < sexp.length) {
+            byte b = sexp[i];
+            if (b == '(') {
+                if (current != null) stack.push(current);
+                current = new ArrayList<>();
+                i++;
+            } else if (b == ')') {
+                if (current != null && current.size() == 2) {
+                    values.putIfAbsent(new String(current.get(0), StandardCharsets.US_ASCII), current.get(1));
+                }
+                current = stack.poll();
+                i++;
+            } else if (b >= '0' && b <= '9') {
+                int colon = i;
+                while (colon < sexp.length && sexp[colon] != ':') colon++;
+                int len = Integer.parseInt(new String(sexp, i, colon - i, StandardCharsets.US_ASCII));
+                byte[] atom = Arrays.copyOfRange(sexp, colon + 1, colon + 1 + len);
+                if (current != null) current.add(atom);
+                i = colon + 1 + len;
+            } else {
+                i++;
+            }
+        }
+        String[] names;
+        switch (algorithm) {
+            case PgpSignatureBuilder.PUBKEY_RSA:
+                names = new String[]{"s"};
+                break;
+            case PgpSignatureBuilder.PUBKEY_DSA:
+            case PgpSignatureBuilder.PUBKEY_ECDSA:
+            case PgpSignatureBuilder.PUBKEY_EDDSA:
+                names = new String[]{"r", "s"};
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported public key algorithm " + algorithm);
+        }
+        byte[][] mpis = new byte[names.length][];
+        for (int j = 0; j < names.length; j++) {
+            mpis[j] = values.get(names[j]);
+            if (mpis[j] == null) {
+                throw new IllegalStateException("Missing `" + names[j] + "` in signature value " + new String(sexp, StandardCharsets.ISO_8859_1));
+            }
+        }
+        return mpis;
+    }
+
+    @Override
+    public String toString() {
+        return "GpgAgentSignerImpl{key=" + signingKey + "}";
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/GpgHomedirSnapshot.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The prepared (keys imported) homedir of gpg, keyed by the digest of key files.
+ * <p>
+ * A snapshot only contains keyrings &amp; trustdb, sockets and locks of running gpg processes are excluded.
+ */
+class GpgHomedirSnapshot {
+    static final String IMPORT_MARKER = ".publication-sign-import";
+
+    static String digestKeys(Collection<File> keys) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (File key : keys) {
+            byte[] content = Files.readAllBytes(key.toPath());
+            digest.update(String.valueOf(content.length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(content);
+        }
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    static boolean isImported(File homedir, String keysDigest) throws IOException {
+        File marker = new File(homedir, IMPORT_MARKER);
+        if (!marker.isFile() || !new File(homedir, "pubring.kbx").isFile()) return false;
+        return new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8).trim().equals(keysDigest);
+    }
+
+    static void markImported(File homedir, String keysDigest) throws IOException {
+        Files.write(new File(homedir, IMPORT_MARKER).toPath(), keysDigest.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isSnapshotFile(Path relative) {
+        String name = relative.getFileName().toString();
+        return !name.startsWith("S.") // sockets
+                && !name.startsWith(".#lk") && !name.endsWith(".lock")
+                && !name.endsWith("~") && !name.endsWith(".tmp");
+    }
+
+    static void write(File homedir, File snapshot) throws IOException {
+        Files.createDirectories(snapshot.getParentFile().toPath());
+        Path root = homedir.toPath();
+        Path tmp = snapshot.toPath().resolveSibling(snapshot.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(newPrivateOutputStream(tmp)))) {
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        Path relative = root.relativize(file);
+                        if (attrs.isRegularFile() && isSnapshotFile(relative)) {
+                            zip.putNextEntry(new ZipEntry(relative.toString().replace(File.separatorChar, '/')));
+                            Files.copy(file, zip);
+                            zip.closeEntry();
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            Files.move(tmp, snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    static void restore(File snapshot, File homedir) throws IOException {
+        Path root = homedir.toPath().toAbsolutePath().normalize();
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(snapshot.toPath())))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) continue;
+                Path target = root.resolve(entry.getName()).normalize();
+                if (!target.startsWith(root)) {
+                    throw new IOException("Bad entry " + entry.getName() + " in " + snapshot);
+                }
+                Path parent = target.getParent();
+                if (!Files.isDirectory(parent)) {
+                    createPrivateDirectories(root, parent);
+                }
+                try (OutputStream output = newPrivateOutputStream(target)) {
+                    copy(zip, output);
+                }
+            }
+        }
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = input.read(buffer)) != -1) {
+            output.write(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Snapshots contain secret keys, written as rw------- rather than by the umask
+     */
+    private static OutputStream newPrivateOutputStream(Path file) throws IOException {
+        if (GpgSignerImpl.isPosix) {
+            Files.deleteIfExists(file);
+            Files.createFile(file, GpgSignerImpl.filePermissions);
+        }
+        return Files.newOutputStream(file);
+    }
+
+    private static void createPrivateDirectories(Path root, Path dir) throws IOException {
+        if (Files.isDirectory(dir)) return;
+        if (!dir.equals(root)) {
+            createPrivateDirectories(root, dir.getParent());
+        }
+        if (GpgSignerImpl.isPosix) {
+            Files.createDirectory(dir, GpgSignerImpl.dirPermissions);
+        } else {
+            Files.createDirectory(dir);
+        }
+    }
+
+    /**
+     * Delete all files of {@code homedir}, keeps the directory
+     */
+    static void clean(File homedir) throws IOException {
+        Path root = homedir.toPath();
+        if (!Files.isDirectory(root)) return;
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (!dir.equals(root)) {
+                    Files.deleteIfExists(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/GpgProcess.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import io.github.karlatemp.publicationsign.signer.SignMetrics;
+import org.gradle.api.logging.Logger;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Run a command of GnuPG with output captured by pipes.
+ * <p>
+ * Standard error is forwarded to the logger as it arrives, and the last {@link #LOG_BUFFER_LINES} lines are kept
+ * for reporting failures. Standard output is either captured as bytes, or parsed as `--status-fd` lines.
+ */
+class GpgProcess {
+    static final int LOG_BUFFER_LINES = 64;
+    static final String STATUS_PREFIX = "[GNUPG:] ";
+    private static final long PUMP_TIMEOUT = 5000;
+
+    final List<String> command;
+    int exitCode;
+    volatile byte[] output;
+    private volatile IOException outputFailure;
+    final List<String> status = Collections.synchronizedList(new ArrayList<>());
+    private final Deque<String> lastLines = new ArrayDeque<>(LOG_BUFFER_LINES);
+
+    /**
+     * Failed by gpg-agent (not running, not responding, or passphrase lost), may succeed with a restarted agent
+     */
+    static class AgentFailureException extends RuntimeException {
+        /**
+         * Failed by asking pinentry for the passphrase, same as a wrong preset passphrase
+         */
+        final boolean pinentry;
+
+        AgentFailureException(String message, boolean pinentry) {
+            super(message);
+            this.pinentry = pinentry;
+        }
+    }
+
+    private GpgProcess(List<String> command) {
+        this.command = command;
+    }
+
+    /**
+     * Processes not finished, destroyed if jvm exits (e.g. Gradle daemon stopped by Ctrl-C)
+     */
+    private static final Set<Process> RUNNING = ConcurrentHashMap.newKeySet();
+
+    static {
+        Thread hook = new Thread(() -> {
+            for (Process process : RUNNING) {
+                destroyTree(process);
+            }
+        }, "PublicationSign gpg processes shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    /**
+     * @param statusOutput If the standard output is the status-fd of gpg
+     * @param timeout      Milliseconds the command can run, &lt;= 0 for no timeout
+     * @throws GpgTimeoutException  If the command not finished in time, the process tree will be killed
+     * @throws InterruptedException If the build cancelled, the process tree will be killed
+     */
+    static GpgProcess run(
+            Logger logger, File workingDir, List<String> command,
+            byte[] input, boolean statusOutput, long timeout
+    ) throws Exception {
+        if (logger != null && logger.isInfoEnabled()) {
+            logger.info("Processing `" + String.join(" ", command) + "`" + (workingDir == null ? "" : " in " + workingDir));
+        }
+        ProcessBuilder processBuilder = new ProcessBuilder().command(command);
+        if (workingDir != null) {
+            processBuilder.directory(workingDir);
+        }
+        GpgProcess result = new GpgProcess(command);
+        Process process = processBuilder.start();
+        RUNNING.add(process);
+        try {
+            SignMetrics.processSpawned();
+            Thread stderrPump = new Thread(() -> result.pumpLog(logger, process.getErrorStream()), "GPG stderr pump");
+            stderrPump.setDaemon(true);
+            stderrPump.start();
+            // Read by another thread, so waiting is interruptible and can time out
+            Thread stdoutPump = new Thread(() -> result.pumpOutput(logger, process.getInputStream(), statusOutput), "GPG stdout pump");
+            stdoutPump.setDaemon(true);
+            stdoutPump.start();
+
+            try (OutputStream stdin = process.getOutputStream()) {
+                if (input != null) {
+                    stdin.write(input);
+                }
+            } catch (IOException ignored) {
+                // Process exited before reading input
+            }
+            try {
+                if (timeout > 0) {
+                    if (!process.waitFor(timeout, TimeUnit.MILLISECONDS)) {
+                        destroyTree(process);
+                        throw new GpgTimeoutException("GPG command not finished in " + timeout + "ms, killed. '" + String.join(" ", command) + "'");
+                    }
+                } else {
+                    process.waitFor();
+                }
+                result.exitCode = process.exitValue();
+                // Pipes may be kept open by detached children, e.g. gpg-agent
+                stdoutPump.join(PUMP_TIMEOUT);
+                stderrPump.join(PUMP_TIMEOUT);
+            } catch (InterruptedException e) {
+                destroyTree(process);
+                throw e;
+            }
+            if (stdoutPump.isAlive()) {
+                // The captured output or status lines are incomplete, and still being appended
+                throw new IOException("Standard output of GPG command not closed in " + PUMP_TIMEOUT + "ms after exited, '" + String.join(" ", command) + "'");
+            }
+            if (result.outputFailure != null) {
+                throw result.outputFailure;
+            }
+            return result;
+        } finally {
+            RUNNING.remove(process);
+        }
+    }
+
+    /**
+     * Destroy {@code process} and its children (Java 9+).
+     * <p>
+     * pinentry is spawned by gpg-agent, not by gpg, so it's never killed here. It's killed with the agent,
+     * when the managed agent restarted for retrying.
+     */
+    static void destroyTree(Process process) {
+        try {
+            @SuppressWarnings("unchecked")
+            Stream<Object> descendants = (Stream<Object>) Process.class.getMethod("descendants").invoke(process);
+            Method destroyForcibly = Class.forName("java.lang.ProcessHandle").getMethod("destroyForcibly");
+            descendants.forEach(child -> {
+                try {
+                    destroyForcibly.invoke(child);
+                } catch (Exception ignored) {
+                }
+            });
+        } catch (Exception ignored) {
+            // Java 8
+        }
+        process.destroyForcibly();
+    }
+
+    private void pumpOutput(Logger logger, InputStream stream, boolean statusOutput) {
+        try {
+            if (statusOutput) {
+                pumpStatus(logger, stream);
+            } else {
+                ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                try (InputStream in = stream) {
+                    int len;
+                    while ((len = in.read(buffer)) != -1) {
+                        stdout.write(buffer, 0, len);
+                    }
+                }
+                output = stdout.toByteArray();
+            }
+        } catch (IOException e) {
+            outputFailure = e;
+        }
+    }
+
+    private void pumpLog(Logger logger, InputStream stream) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                synchronized (lastLines) {
+                    if (lastLines.size() == LOG_BUFFER_LINES) {
+                        lastLines.removeFirst();
+                    }
+                    lastLines.addLast(line);
+                }
+                if (logger != null && logger.isInfoEnabled()) {
+                    logger.info(line);
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void pumpStatus(Logger logger, InputStream stream) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith(STATUS_PREFIX)) continue;
+                String statusLine = line.substring(STATUS_PREFIX.length());
+                status.add(statusLine);
+                if (logger != null && logger.isDebugEnabled()) {
+                    logger.debug(line);
+                }
+            }
+        }
+    }
+
+    boolean hasStatus(String keyword) {
+        for (String line : status) {
+            if (line.equals(keyword) || line.startsWith(keyword + " ")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Error codes (libgpg-error, without the error source) of `FAILURE` / `ERROR` status lines
+     */
+    private List<Integer> errorCodes() {
+        List<Integer> codes = new ArrayList<>();
+        for (String line : status) {
+            if (!line.startsWith("FAILURE ") && !line.startsWith("ERROR ")) continue;
+            String[] fields = line.split(" ");
+            try {
+                if (fields.length > 2) codes.add((int) Long.parseLong(fields[2]) & 0xFFFF);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Errors of gpg-agent or the IPC to it
+     */
+    private static boolean isAgentError(int code) {
+        switch (code) {
+            case 62: // Timeout
+            case 77: // No agent running
+            case 78: // Agent error
+            case 16383: // EOF
+            case 0x8019: // ECONNREFUSED
+            case 0x801A: // ECONNRESET
+            case 0x806D: // EPIPE
+                return true;
+            default:
+                // IPC errors
+                return (code >= 257 && code <= 281) || isPinentryError(code);
+        }
+    }
+
+    /**
+     * Passphrase asked by pinentry, because it was lost by a restarted agent, or the preset one is wrong
+     */
+    private static boolean isPinentryError(int code) {
+        return code == 85 // No pinentry
+                || code == 86 // pinentry error
+                || code == 0x8066; // ENOTTY, pinentry without tty
+    }
+
+    /**
+     * Check exit code &amp; status lines, report the last logs if failed.
+     *
+     * @param expectedStatus The status keyword must be reported by gpg if succeed, nullable
+     * @throws AgentFailureException If failed by gpg-agent
+     */
+    void assertSuccess(Logger logger, String expectedStatus) {
+        String failure = null;
+        if (exitCode != 0) {
+            failure = "GPG command response " + exitCode + " != 0";
+        } else if (hasStatus("FAILURE") || hasStatus("BADSIG") || hasStatus("ERRSIG")) {
+            failure = "GPG command reported failure";
+        } else if (expectedStatus != null && !hasStatus(expectedStatus)) {
+            failure = "GPG command not reported " + expectedStatus;
+        }
+        if (failure == null) return;
+
+        List<String> logs;
+        synchronized (lastLines) {
+            logs = new ArrayList<>(lastLines);
+        }
+        for (String line : logs) {
+            if (logger == null) {
+                System.out.println(line);
+            } else {
+                logger.error(line);
+            }
+        }
+        for (String line : status) {
+            if (line.startsWith("FAILURE") || line.startsWith("ERROR") || line.startsWith("BADSIG") || line.startsWith("ERRSIG")) {
+                if (logger == null) {
+                    System.out.println(STATUS_PREFIX + line);
+                } else {
+                    logger.error(STATUS_PREFIX + line);
+                }
+            }
+        }
+        String message = failure + ", '" + String.join(" ", command) + "'";
+        boolean agentFailure = false;
+        boolean pinentry = false;
+        for (int code : errorCodes()) {
+            agentFailure |= isAgentError(code);
+            pinentry |= isPinentryError(code);
+        }
+        throw agentFailure ? new AgentFailureException(message, pinentry) : new RuntimeException(message);
+    }
+}
@@ -12,12 +12,23 @@
 package io.github.karlatemp.publicationsign.signerimpl;
 
 import io.github.karlatemp.publicationsign.GpgSignerWorkflow;
+import io.github.karlatemp.publicationsign.pgp.PgpHashAlgorithm;
+import io.github.karlatemp.publicationsign.pgp.PgpKey;
+import io.github.karlatemp.publicationsign.pgp.PgpKeyRing;
+import io.github.karlatemp.publicationsign.pgp.PgpSignature;
+import io.github.karlatemp.publicationsign.pgp.PgpVerifier;
 import io.github.karlatemp.publicationsign.signer.AbstractArtifactSigner;
+import io.github.karlatemp.publicationsign.signer.ArtifactDigests;
+import io.github.karlatemp.publicationsign.signer.SignEvents;
+import io.github.karlatemp.publicationsign.signer.SignMetrics;
+import io.github.karlatemp.publicationsign.signer.SignatureCache;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 
 import java.io.*;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -31,11 +42,34 @@ import static java.nio.file.attribute.PosixFilePermission.*;
 
 public class GpgSignerImpl extends AbstractArtifactSigner {
     private final GpgSignerWorkflow workflow;
+    private SignatureCache signatureCache;
+    private String signingKeyFingerprint;
+    private String configuredKeyFingerprint;
+    private String configuredKeyStamp;
+    private transient Logger logger;
+    private File homedirFile;
+    private boolean configured;
+    private transient boolean initialized;
+    private transient boolean keysImported;
+    private transient PgpVerifier verifier;
+    private transient boolean verifierUnavailable;
+    private transient boolean agentPrepared;
+    private transient boolean agentOwned;
+    /**
+     * Count of agent restarts, signing threads failed by the same agent restart it only once
+     */
+    private transient int agentGeneration;
+    private transient String keysStamp;
+    private transient File runDir;
+    private transient MemoryWorkdir memoryWorkdir;
 
     static final FileAttribute<Set<PosixFilePermission>> dirPermissions =
             PosixFilePermissions.asFileAttribute(EnumSet
                     .of(OWNER_READ, OWNER_WRITE, OWNER_EXECUTE));
-    private static final boolean isPosix =
+    static final FileAttribute<Set<PosixFilePermission>> filePermissions =
+            PosixFilePermissions.asFileAttribute(EnumSet
+                    .of(OWNER_READ, OWNER_WRITE));
+    static final boolean isPosix =
             FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
 
     private static boolean mkdir1(File dir) {
@@ -54,7 +88,7 @@ public class GpgSignerImpl extends AbstractArtifactSigner {
         String customTmp = System.getProperty("publication-sign.workingDir");
         if (customTmp != null) {
             tmp = new File(customTmp);
-            if (!tmp.mkdirs()) {
+            if (!tmp.mkdirs() && !tmp.isDirectory()) {
                 throw new IllegalStateException("Failed to create " + customTmp + " (JvmProp publication-sign.workingDir)");
             }
             return tmp;
@@ -62,7 +96,7 @@ public class GpgSignerImpl extends AbstractArtifactSigner {
         customTmp = System.getenv("PUBLICATION_SIGN_WORKING_DIR");
         if (customTmp != null) {
             tmp = new File(customTmp);
-            if (!tmp.mkdirs()) {
+            if (!tmp.mkdirs() && !tmp.isDirectory()) {
                 throw new IllegalStateException("Failed to create " + customTmp + " (SysEnv PUBLICATION_SIGN_WORKING_DIR)");
             }
             return tmp;
@@ -96,20 +130,44 @@ public class GpgSignerImpl extends AbstractArtifactSigner {
         throw new IllegalStateException("Failed to create a temp directory for ci");
     }
 
+    static class SigningKey {
+        String keygrip;
+        String fingerprint;
+        int algorithm;
+        long created;
+
+        byte[] fingerprintBytes() {
+            byte[] result = new byte[fingerprint.length() / 2];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (byte) Integer.parseInt(fingerprint.substring(i * 2, i * 2 + 2), 16);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return fingerprint + " (algo " + algorithm + ", keygrip " + keygrip + ")";
+        }
+    }
+
     public GpgSignerImpl(GpgSignerWorkflow workflow) {
         this.workflow = workflow;
     }
 
+    public GpgSignerWorkflow getWorkflow() {
+        return workflow;
+    }
+
     public static File getDefaultWorkdir(Project project) {
         return new File(project.getBuildDir(), "gpg-sign");
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    public synchronized void initialize(Project project) throws Exception {
-        Logger logger = project.getLogger();
+    @Override
+    public synchronized void configure(Project project) throws Exception {
+        if (configured) return;
         File workingDir = workflow.workingDir;
         {
-            File tmp = createCiTmp(project, logger);
+            File tmp = createCiTmp(project, project.getLogger());
             if (tmp != null) {
                 workingDir = tmp;
             }
@@ -118,6 +176,17 @@ public class GpgSignerImpl extends AbstractArtifactSigner {
             workingDir = getDefaultWorkdir(project);
         }
         workflow.workingDir = workingDir;
+        configured = true;
+    }
+
+    @Override
+    public synchronized void initialize(Logger logger) throws Exception {
+        if (initialized) return;
+        this.logger = logger;
+        File workingDir = workflow.workingDir;
+        if (workingDir == null) {
+            throw new IllegalStateException("Working dir not configured. Please call configure(Project) at configuration time");
+        }
         mkdir1(workingDir);
         if (!workingDir.isDirectory()) {
             throw new IllegalStateException(
@@ -129,33 +198,292 @@ public class GpgSignerImpl extends AbstractArtifactSigner {
             homedir = "homedir";
         }
         workflow.homedir = homedir;
-        if (homedir == null) {
-            return; // disabled sandbox
+        runDir = workingDir;
+        if (homedir != null && isMemoryHomedir()) {
+            memoryWorkdir = MemoryWorkdir.create(workingDir, logger);
+            if (memoryWorkdir != null) {
+                runDir = memoryWorkdir.dir;
+                if (logger.isInfoEnabled()) {
+                    logger.info("[GPG Signer] Using memory-backed working dir " + runDir);
+                }
+            } else if (logger.isInfoEnabled()) {
+                logger.info("[GPG Signer] No memory-backed filesystem available, using " + workingDir);
+            }
         }
-        File homedirFile = new File(workingDir, homedir);
-        File pubringkbx = new File(homedirFile, "pubring.kbx");
-        if (pubringkbx.isFile()) {
-            return;
+        if (homedir != null) {
+            homedirFile = new File(runDir, homedir);
         }
-        mkdir1(homedirFile);
-        // "--batch", "--import"
-        Collection<File> keys = workflow.keys;
-        if (keys == null || keys.isEmpty()) {
+        signatureCache = workflow.newSignatureCache();
+        keysStamp = workflow.getKeysStamp();
+        initialized = true;
+    }
+
+    @Override
+    public String getPoolKey() {
+        return getClass().getName() + " " + workflow.getPoolKey();
+    }
+
+    @Override
+    public synchronized boolean isPoolValid() {
+        if (!workflow.getKeysStamp().equals(keysStamp)) return false;
+        // Deleted by `gradle clean`
+        return !keysImported || new File(homedirFile, "pubring.kbx").isFile();
+    }
+
+    /**
+     * Import keys into the sandbox homedir. Deferred until gpg is really needed,
+     * so builds reusing signatures from caches never spawn gpg.
+     * <p>
+     * The homedir is reused only if it was prepared by the same key files, or restored from the snapshot of them.
+     */
+    synchronized void importKeys(Logger logger) throws Exception {
+        if (keysImported || homedirFile == null) return; // disabled sandbox
+        List<File> keys = new ArrayList<>();
+        if (workflow.keys != null) {
+            for (File key : workflow.keys) {
+                if (key != null) keys.add(key);
+            }
+        }
+        if (keys.isEmpty()) {
+            if (new File(homedirFile, "pubring.kbx").isFile()) {
+                // Prepared by `fastSetup`
+                keysImported = true;
+                return;
+            }
             logger.error("[GPG Signer] Workflow no any keys. Please setup keys for sign");
             throw new RuntimeException("No keys");
         }
+        String keysDigest = GpgHomedirSnapshot.digestKeys(keys);
+        if (GpgHomedirSnapshot.isImported(homedirFile, keysDigest)) {
+            keysImported = true;
+            return;
+        }
+        // Keys changed or not imported completely
+        GpgHomedirSnapshot.clean(homedirFile);
+        mkdir1(homedirFile);
+
+        File snapshotDir = getHomedirSnapshotDir();
+        File snapshot = snapshotDir == null ? null : new File(snapshotDir, "homedir-" + keysDigest + ".zip");
+        if (snapshot != null && snapshot.isFile()) {
+            try {
+                GpgHomedirSnapshot.restore(snapshot, homedirFile);
+                if (GpgHomedirSnapshot.isImported(homedirFile, keysDigest)) {
+                    if (logger.isInfoEnabled()) {
+                        logger.info("[GPG Signer] Restored homedir from " + snapshot);
+                    }
+                    keysImported = true;
+                    return;
+                }
+            } catch (IOException e) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("[GPG Signer] Failed to restore homedir from " + snapshot, e);
+                }
+            }
+            GpgHomedirSnapshot.clean(homedirFile);
+        }
+
+        List<String> cmd = new ArrayList<>(Arrays.asList("--batch", "--import"));
         for (File key : keys) {
-            if (key != null) {
-                processGPG(logger, "--batch", "--import", key.toString());
+            cmd.add(key.toString());
+        }
+        processGPGExpecting(logger, "IMPORT_RES", cmd.toArray(new String[0]));
+        GpgHomedirSnapshot.markImported(homedirFile, keysDigest);
+        keysImported = true;
+
+        if (snapshot != null) {
+            try {
+                GpgHomedirSnapshot.write(homedirFile, snapshot);
+            } catch (IOException e) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("[GPG Signer] Failed to save homedir snapshot " + snapshot, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start the gpg-agent of sandbox homedir before the first signature, and preset the passphrase of signing key.
+     * <p>
+     * The agent of a previous build (maybe killed before shutting down it) will be restarted with current config.
+     * Agent of user homedir is never started or killed by us, only the passphrase will be preset if configured.
+     */
+    synchronized void startAgent(Logger logger) throws Exception {
+        if (agentPrepared) return;
+        importKeys(logger);
+        char[] passphrase = workflow.readPassphrase();
+        if (homedirFile != null && workflow.manageAgent) {
+            writeAgentConf(passphrase != null);
+            try {
+                queryTool(logger, "gpgconf", "--kill", "gpg-agent");
+            } catch (GpgTimeoutException e) {
+                // Wedged (e.g. stopped), can't be killed by request
+                abandonAgent(logger);
+            }
+            queryTool(logger, "gpgconf", "--launch", "gpg-agent");
+            agentOwned = true;
+        }
+        if (passphrase != null) {
+            presetPassphrase(logger, findSigningKey(logger).keygrip, passphrase);
+            Arrays.fill(passphrase, '\0');
+        }
+        agentPrepared = true;
+    }
+
+    /**
+     * Remove sockets of a not responding agent, so a new agent will be launched
+     */
+    private void abandonAgent(Logger logger) throws Exception {
+        File socket = new File(GpgAgentSignerImpl.unescape(queryTool(logger, "gpgconf", "--list-dirs", "agent-socket").trim()));
+        if (!socket.isAbsolute()) {
+            socket = new File(getRunDir(), socket.getPath());
+        }
+        File[] sockets = socket.getParentFile().listFiles((dir, name) -> name.startsWith("S.gpg-agent"));
+        if (sockets == null) return;
+        if (logger.isWarnEnabled()) {
+            logger.warn("[GPG Signer] gpg-agent of " + homedirFile + " not responding, starting a new one");
+        }
+        for (File file : sockets) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    synchronized int getAgentGeneration() {
+        return agentGeneration;
+    }
+
+    /**
+     * Restart the managed gpg-agent, then preset the passphrase again.
+     * <p>
+     * Skipped if already restarted by another signing thread after {@code generation}, the failed call just needs a retry.
+     *
+     * @param generation {@link #getAgentGeneration()} before the failed call
+     */
+    synchronized void restartAgent(Logger logger, int generation) throws Exception {
+        if (generation != agentGeneration) return;
+        agentPrepared = false;
+        startAgent(logger);
+        agentGeneration++;
+    }
+
+    /**
+     * Wait before retrying, {@link GpgSignerWorkflow#commandRetryBackoff} doubled by every attempt
+     */
+    void backoff(int attempt) throws InterruptedException {
+        long backoff = workflow.commandRetryBackoff << Math.min(attempt, 16);
+        if (backoff > 0) {
+            Thread.sleep(backoff);
+        }
+    }
+
+    private void writeAgentConf(boolean presetPassphrase) throws IOException {
+        StringBuilder conf = new StringBuilder();
+        if (presetPassphrase) {
+            conf.append("allow-preset-passphrase\n");
+        }
+        // Keep unlocked key for the whole build
+        conf.append("default-cache-ttl 86400\n");
+        conf.append("max-cache-ttl 86400\n");
+        Files.write(new File(homedirFile, "gpg-agent.conf").toPath(), conf.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void presetPassphrase(Logger logger, String keygrip, char[] passphrase) throws Exception {
+        byte[] passphraseBytes = toBytes(passphrase);
+        String command = "PRESET_PASSPHRASE " + keygrip + " -1 ";
+        byte[] input = (command + AssuanClient.hex(passphraseBytes) + "\n/bye\n").getBytes(StandardCharsets.US_ASCII);
+        Arrays.fill(passphraseBytes, (byte) 0);
+        try {
+            AssuanClient.readResponse(
+                    new ByteArrayInputStream(exchangeTool(logger, "gpg-connect-agent", input)),
+                    null, command.trim()
+            );
+        } catch (AssuanClient.AssuanException e) {
+            if (!agentOwned) {
+                throw new IllegalStateException("Failed to preset passphrase. Please add `allow-preset-passphrase` to gpg-agent.conf of your homedir", e);
             }
+            throw e;
+        } finally {
+            Arrays.fill(input, (byte) 0);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("[GPG Signer] Passphrase of " + keygrip + " preset");
         }
     }
 
+    private static byte[] toBytes(char[] passphrase) {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(passphrase));
+        byte[] result = Arrays.copyOfRange(buffer.array(), buffer.position(), buffer.limit());
+        Arrays.fill(buffer.array(), (byte) 0);
+        return result;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (agentOwned) {
+            agentOwned = false;
+            agentPrepared = false;
+            try {
+                queryTool(logger, "gpgconf", "--kill", "gpg-agent");
+            } catch (Exception e) {
+                if (logger != null && logger.isWarnEnabled()) {
+                    logger.warn("[GPG Signer] Failed to kill gpg-agent", e);
+                }
+            }
+        }
+        if (memoryWorkdir != null) {
+            try {
+                memoryWorkdir.close();
+            } catch (IOException e) {
+                if (logger != null && logger.isWarnEnabled()) {
+                    logger.warn("[GPG Signer] Failed to delete working dir " + memoryWorkdir, e);
+                }
+            }
+            // Keys must be imported again
+            memoryWorkdir = null;
+            initialized = false;
+            keysImported = false;
+            agentPrepared = false;
+        }
+    }
+
+    private boolean isMemoryHomedir() {
+        if (workflow.memoryHomedir) return true;
+        String enabled = System.getProperty("publication-sign.memoryHomedir");
+        if (enabled == null) enabled = System.getenv("PUBLICATION_SIGN_MEMORY_HOMEDIR");
+        return Boolean.parseBoolean(enabled);
+    }
+
+    /**
+     * The working dir of gpg processes, where the homedir placed
+     */
+    File getRunDir() {
+        return runDir == null ? workflow.workingDir : runDir;
+    }
+
+    private File getHomedirSnapshotDir() {
+        if (workflow.homedirSnapshotDir != null) return workflow.homedirSnapshotDir;
+        String dir = System.getProperty("publication-sign.homedirSnapshotDir");
+        if (dir == null) dir = System.getenv("PUBLICATION_SIGN_HOMEDIR_SNAPSHOT_DIR");
+        return dir == null ? null : new File(dir);
+    }
+
     public void processGPG(Logger logger, String... cmd) throws Exception {
         processGPG(logger, false, cmd);
     }
 
     public void processGPG(Logger logger, boolean noHomedir, String... cmd) throws Exception {
+        runGPG(logger, noHomedir, null, cmd);
+    }
+
+    /**
+     * Run gpg and check the status reported by `--status-fd`.
+     *
+     * @param expectedStatus The status keyword must be reported by gpg if succeed, e.g. {@code SIG_CREATED}
+     */
+    public void processGPGExpecting(Logger logger, String expectedStatus, String... cmd) throws Exception {
+        runGPG(logger, false, expectedStatus, cmd);
+    }
+
+    private void runGPG(Logger logger, boolean noHomedir, String expectedStatus, String... cmd) throws Exception {
         List<String> cmd0 = new ArrayList<>();
         cmd0.add(workflow.gpgCommandBinary);
         if (!noHomedir) {
@@ -164,6 +492,8 @@ public class GpgSignerImpl extends AbstractArtifactSigner {
                 cmd0.add(workflow.homedir);
             }
         }
+        cmd0.add("--status-fd");
+        cmd0.add("1");
 
         List<String> additionArguments = workflow.additionArguments;
         if (additionArguments != null) {
@@ -171,50 +501,169 @@ public class GpgSignerImpl extends AbstractArtifactSigner {
         }
 
         cmd0.addAll(Arrays.asList(cmd));
-        File out = new File(workflow.workingDir, "gpg-" + System.currentTimeMillis() + "-" + UUID.randomUUID() + ".log");
-        out.createNewFile();
-        execCommand(logger, workflow.workingDir, out, cmd0);
-    }
-
-    private static void execCommand(Logger logger, File workingDir, File out, List<String> cmd0) throws Exception {
-        if (logger != null && logger.isInfoEnabled()) {
-            logger.info("Processing `" + String.join(" ", cmd0) + "`" + (workingDir == null ? "" : " in " + workingDir));
-        }
-        ProcessBuilder processBuilder = new ProcessBuilder()
-                .command(cmd0);
-        if (workingDir != null) {
-            processBuilder.directory(workingDir);
-        }
-        if (out == null) {
-            out = File.createTempFile("tmp-psrun", ".log");
-        }
-        int response = processBuilder
-                .redirectError(out)
-                .redirectOutput(out)
-                .start()
-                .waitFor();
-        if ((logger != null && logger.isInfoEnabled()) || response != 0) {
-            Thread.sleep(1000L);
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(out), StandardCharsets.UTF_8))) {
-                while (true) {
-                    String line = reader.readLine();
-                    if (line == null) break;
-                    if (logger == null) {
-                        System.out.println(line);
-                    } else {
-                        if (response != 0) {
-                            logger.error(line);
-                        } else {
-                            logger.info(line);
+        GpgProcess.run(logger, getRunDir(), cmd0, null, true, workflow.commandTimeout)
+                .assertSuccess(logger, expectedStatus);
+    }
+
+    /**
+     * Run a tool of GnuPG (`gpg`, `gpgconf`, `gpg-connect-agent`, ...) in the signing homedir and returns the standard output.
+     * <p>
+     * The tool is resolved in the same directory of {@link GpgSignerWorkflow#gpgCommandBinary}
+     */
+    public String queryTool(Logger logger, String tool, String... cmd) throws Exception {
+        return new String(exchangeTool(logger, tool, null, cmd), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Same as {@link #queryTool(Logger, String, String...)} but writes {@code input} to the standard input
+     */
+    public byte[] exchangeTool(Logger logger, String tool, byte[] input, String... cmd) throws Exception {
+        List<String> cmd0 = new ArrayList<>();
+        cmd0.add(resolveTool(tool));
+        if (workflow.homedir != null) {
+            cmd0.add("--homedir");
+            cmd0.add(workflow.homedir);
+        }
+        cmd0.addAll(Arrays.asList(cmd));
+        GpgProcess process = GpgProcess.run(logger, getRunDir(), cmd0, input, false, workflow.commandTimeout);
+        process.assertSuccess(logger, null);
+        return process.output;
+    }
+
+    public String resolveTool(String tool) {
+        String gpg = workflow.gpgCommandBinary;
+        if (tool.equals("gpg")) return gpg;
+        int split = Math.max(gpg.lastIndexOf('/'), gpg.lastIndexOf('\\'));
+        String name = gpg.substring(split + 1);
+        if (!name.contains("gpg")) return tool;
+        // /usr/bin/gpg2 -> /usr/bin/gpgconf, gpg.exe -> gpgconf.exe
+        String suffix = name.endsWith(".exe") ? ".exe" : "";
+        return gpg.substring(0, split + 1) + tool + suffix;
+    }
+
+    /**
+     * Find the key used by gpg for signing, by listing secret keys.
+     */
+    SigningKey findSigningKey(Logger logger) throws Exception {
+        importKeys(logger);
+        List<String> cmd = new ArrayList<>(Arrays.asList(
+                "--batch", "--with-colons", "--with-keygrip", "--fixed-list-mode", "--list-secret-keys"
+        ));
+        String localUser = InProcessSignerImpl.findLocalUser(workflow.additionArguments);
+        if (localUser != null) {
+            cmd.add(localUser);
+        }
+        String listing = queryTool(logger, "gpg", cmd.toArray(new String[0]));
+
+        SigningKey result = null;
+        SigningKey current = null;
+        boolean primaryUsable = false;
+        for (String line : listing.split("\r?\n")) {
+            String[] fields = line.split(":", -1);
+            switch (fields[0]) {
+                case "sec": {
+                    if (result != null) return result;
+                    String validity = fields[1];
+                    primaryUsable = fields.length > 11 && fields[11].contains("S")
+                            && !validity.equals("e") && !validity.equals("r")
+                            && !validity.equals("d") && !validity.equals("i");
+                }
+                // fallthrough
+                case "ssb": {
+                    current = null;
+                    if (!primaryUsable || fields.length < 15) continue;
+                    String validity = fields[1];
+                    if (validity.equals("e") || validity.equals("r") || validity.equals("d") || validity.equals("i")) {
+                        continue;
+                    }
+                    if (!fields[11].contains("s")) continue;
+                    if (fields[14].equals("#")) continue; // secret key not available
+                    current = new SigningKey();
+                    current.algorithm = Integer.parseInt(fields[3]);
+                    current.created = Long.parseLong(fields[5]);
+                    break;
+                }
+                case "fpr": {
+                    if (current != null && current.fingerprint == null) {
+                        current.fingerprint = fields[9];
+                    }
+                    break;
+                }
+                case "grp": {
+                    if (current != null && current.keygrip == null) {
+                        current.keygrip = fields[9];
+                        // The newest key will be used, same as gpg
+                        if (result == null || current.created >= result.created) {
+                            result = current;
                         }
                     }
+                    break;
                 }
             }
         }
-        if (response != 0) {
-            throw new RuntimeException("GPG command response " + response + " != 0, '" + String.join(" ", cmd0) + "'");
+        if (result == null) {
+            throw new IllegalStateException("No usable signing key found" + (localUser == null ? "" : " for " + localUser));
+        }
+        return result;
+    }
+
+    @Override
+    protected SignatureCache getSignatureCache() {
+        return signatureCache;
+    }
+
+    /**
+     * The signing key in {@link GpgSignerWorkflow#keys}, same key will be selected by gpg, resolved without spawning gpg
+     *
+     * @return {@code null} if keys not given (user homedir), or can't be parsed in jvm
+     */
+    static String findKeyFingerprint(GpgSignerWorkflow workflow) {
+        Collection<File> keys = workflow.keys;
+        if (keys == null || keys.isEmpty() || workflow.isUserMode) return null;
+        try {
+            PgpKey key = PgpKeyRing.load(keys).findSigningKey(
+                    InProcessSignerImpl.findLocalUser(workflow.additionArguments),
+                    System.currentTimeMillis() / 1000
+            );
+            return key == null ? null : key.getFingerprintHex();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized String getConfiguredSigningKeyFingerprint() {
+        String stamp = workflow.getKeysStamp();
+        if (!stamp.equals(configuredKeyStamp)) {
+            configuredKeyFingerprint = findKeyFingerprint(workflow);
+            configuredKeyStamp = stamp;
+        }
+        return configuredKeyFingerprint;
+    }
+
+    @Override
+    public synchronized String getSigningKeyFingerprint() throws Exception {
+        if (signingKeyFingerprint != null) return signingKeyFingerprint;
+        String fingerprint = getConfiguredSigningKeyFingerprint();
+        if (fingerprint != null) {
+            return signingKeyFingerprint = fingerprint;
         }
-        out.delete();
+        return signingKeyFingerprint = findSigningKey(logger).fingerprint;
+    }
+
+    @Override
+    public String getConfigurationKey() {
+        return workflow.getConfigurationKey();
+    }
+
+    @Override
+    public List<String> getChecksums() {
+        return workflow.checksums == null ? Collections.emptyList() : workflow.checksums;
+    }
+
+    @Override
+    public int getMaxParallelSigns() {
+        return workflow.parallelSigns;
     }
 
     @Override
@@ -224,21 +673,112 @@ public class GpgSignerImpl extends AbstractArtifactSigner {
 
     @Override
     protected void sign0(Logger logger, File artifactFile, File signFile) throws Exception {
+        sign0(logger, artifactFile, signFile, new MessageDigest[0]);
+    }
+
+    @Override
+    protected boolean sign0(Logger logger, File artifactFile, File signFile, MessageDigest[] digests) throws Exception {
+        long start = System.nanoTime();
+        startAgent(logger);
+        SignMetrics.record(SignMetrics.Phase.INITIALIZE, start);
+        start = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            // Left by a killed or failed attempt, gpg refuses to overwrite it
+            Files.deleteIfExists(signFile.toPath());
+            int generation = getAgentGeneration();
+            try {
+                signByGpg(logger, artifactFile);
+                break;
+            } catch (GpgProcess.AgentFailureException | GpgTimeoutException e) {
+                // The agent may be killed or wedged, passphrase lost when restarted by gpg automatically.
+                // Other failures (e.g. no secret key) never succeed by retrying
+                if (attempt >= workflow.commandRetries) throw e;
+                if (attempt > 0 && e instanceof GpgProcess.AgentFailureException && ((GpgProcess.AgentFailureException) e).pinentry) {
+                    // Passphrase just preset into the restarted agent, so it's wrong
+                    throw e;
+                }
+                if (logger.isWarnEnabled()) {
+                    logger.warn("[GPG Signer] Failed to sign " + artifactFile + ", retrying with restarted gpg-agent", e);
+                }
+                backoff(attempt);
+                restartAgent(logger, generation);
+            }
+        }
+        SignMetrics.record(SignMetrics.Phase.SIGN, start);
+
+        if (workflow.skipVerify) return false;
+
+        SignEvents.verifyStarted(this, artifactFile);
+        start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return verify(logger, artifactFile, signFile, digests);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            SignEvents.verifyFinished(this, artifactFile, System.nanoTime() - start, failure);
+        }
+    }
+
+    /**
+     * @return {@code true} if {@code digests} updated
+     */
+    private boolean verify(Logger logger, File artifactFile, File signFile, MessageDigest[] digests) throws Exception {
+        PgpVerifier verifier = verifier(logger);
+        if (verifier != null) {
+            PgpSignature signature = PgpVerifier.readSignature(signFile);
+            if (verifier.isSupported(signature)) {
+                // Read artifact once for verifying & checksums
+                MessageDigest digest = PgpHashAlgorithm.byId(signature.hashAlgorithm).newDigest();
+                ArtifactDigests.update(artifactFile, ArtifactDigests.with(digests, digest));
+                long start = System.nanoTime();
+                boolean verified = verifier.verify(signature, digest);
+                SignMetrics.record(SignMetrics.Phase.VERIFY, start);
+                return verified;
+            }
+        }
+        long start = System.nanoTime();
+        processGPGExpecting(logger, "VALIDSIG", "--no-tty", "--verify", signFile.toString(), artifactFile.toString());
+        SignMetrics.record(SignMetrics.Phase.VERIFY, start);
+        return false;
+    }
+
+    private void signByGpg(Logger logger, File artifactFile) throws Exception {
         if (workflow.isUserMode) {
-            processGPG(logger,
+            processGPGExpecting(logger, "SIG_CREATED",
                     "-a", "--no-tty",
                     "--detach-sig", "--sign", artifactFile.toString()
             );
         } else {
-            processGPG(logger,
+            processGPGExpecting(logger, "SIG_CREATED",
                     "-a", "--no-tty", "--batch",
                     "--detach-sig", "--sign", artifactFile.toString()
             );
         }
+    }
 
-        if (workflow.skipVerify) return;
-
-        processGPG(logger, "--no-tty", "--verify", signFile.toString(), artifactFile.toString());
+    /**
+     * The verifier by public keys of {@link GpgSignerWorkflow#keys}, or exported from homedir.
+     *
+     * @return {@code null} if keys can't be loaded in jvm, verify by gpg instead
+     */
+    private synchronized PgpVerifier verifier(Logger logger) {
+        if (verifier != null || verifierUnavailable) return verifier;
+        try {
+            Collection<File> keys = workflow.keys;
+            if (keys != null && !keys.isEmpty() && !workflow.isUserMode) {
+                verifier = new PgpVerifier(PgpKeyRing.load(keys));
+            } else {
+                verifier = new PgpVerifier(PgpKeyRing.load(exchangeTool(logger, "gpg", null, "--batch", "--export")));
+            }
+        } catch (Exception e) {
+            verifierUnavailable = true;
+            if (logger.isInfoEnabled()) {
+                logger.info("[GPG Signer] Failed to load public keys, signatures will be verified by gpg", e);
+            }
+        }
+        return verifier;
     }
 
 }
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/GpgTimeoutException.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import java.io.IOException;
+
+/**
+ * A gpg command or gpg-agent request not finished in {@link io.github.karlatemp.publicationsign.GpgSignerWorkflow#commandTimeout}
+ */
+public class GpgTimeoutException extends IOException {
+    public GpgTimeoutException(String message) {
+        super(message);
+    }
+}
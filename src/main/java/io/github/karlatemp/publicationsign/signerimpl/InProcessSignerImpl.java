@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/InProcessSignerImpl.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import io.github.karlatemp.publicationsign.GpgSignerWorkflow;
+import io.github.karlatemp.publicationsign.pgp.PgpHashAlgorithm;
+import io.github.karlatemp.publicationsign.pgp.PgpKey;
+import io.github.karlatemp.publicationsign.pgp.PgpKeyRing;
+import io.github.karlatemp.publicationsign.pgp.PgpSignatureBuilder;
+import io.github.karlatemp.publicationsign.signer.AbstractArtifactSigner;
+import io.github.karlatemp.publicationsign.signer.SignMetrics;
+import io.github.karlatemp.publicationsign.signer.SignatureCache;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sign artifacts in jvm, without any external gpg binary.
+ * <p>
+ * Keys in {@link GpgSignerWorkflow#keys} are loaded once. Only RSA keys are supported.
+ */
+public class InProcessSignerImpl extends AbstractArtifactSigner {
+    private final GpgSignerWorkflow workflow;
+    private transient PgpKey signingKey;
+    private transient PrivateKey privateKey;
+    private transient SignatureCache signatureCache;
+    private transient String keysStamp;
+
+    public InProcessSignerImpl(GpgSignerWorkflow workflow) {
+        this.workflow = workflow;
+    }
+
+    @Override
+    public void configure(Project project) {
+        if (workflow.workingDir == null) {
+            workflow.workingDir = GpgSignerImpl.getDefaultWorkdir(project);
+        }
+    }
+
+    @Override
+    public synchronized void initialize(Logger logger) throws Exception {
+        if (privateKey != null) return;
+        Collection<File> keys = workflow.keys;
+        if (keys == null || keys.isEmpty()) {
+            logger.error("[In-Process Signer] Workflow no any keys. Please setup keys for sign");
+            throw new RuntimeException("No keys");
+        }
+        PgpKeyRing keyRing = PgpKeyRing.load(keys);
+        String localUser = findLocalUser(workflow.additionArguments);
+        PgpKey key = keyRing.findSigningKey(localUser, System.currentTimeMillis() / 1000);
+        if (key == null) {
+            throw new IllegalStateException("No usable signing key found in " + keys
+                    + (localUser == null ? "" : " for " + localUser)
+                    + ". Available keys: " + keyRing.getKeys());
+        }
+        if (key.algorithm != PgpSignatureBuilder.PUBKEY_RSA) {
+            throw new UnsupportedOperationException("In-process signer only supports RSA keys, but " + key + " found. Please use gpg or gpg-agent signer");
+        }
+        privateKey = key.getPrivateKey(workflow.readPassphrase());
+        signingKey = key;
+        signatureCache = workflow.newSignatureCache();
+        keysStamp = workflow.getKeysStamp();
+        if (logger.isInfoEnabled()) {
+            logger.info("[In-Process Signer] Using key " + key);
+        }
+    }
+
+    static String findLocalUser(List<String> arguments) {
+        if (arguments == null) return null;
+        for (int i = 0; i < arguments.size() - 1; i++) {
+            String argument = arguments.get(i);
+            if (argument.equals("--local-user") || argument.equals("-u") || argument.equals("--default-key")) {
+                return arguments.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected SignatureCache getSignatureCache() {
+        return signatureCache;
+    }
+
+    @Override
+    public String getSigningKeyFingerprint() {
+        PgpKey key = this.signingKey;
+        return key == null ? null : key.getFingerprintHex();
+    }
+
+    @Override
+    public String getConfiguredSigningKeyFingerprint() {
+        return GpgSignerImpl.findKeyFingerprint(workflow);
+    }
+
+    @Override
+    public String getPoolKey() {
+        return getClass().getName() + " " + workflow.getPoolKey();
+    }
+
+    @Override
+    public synchronized boolean isPoolValid() {
+        return workflow.getKeysStamp().equals(keysStamp);
+    }
+
+    @Override
+    public String getConfigurationKey() {
+        return workflow.getConfigurationKey();
+    }
+
+    @Override
+    public List<String> getChecksums() {
+        return workflow.checksums == null ? Collections.emptyList() : workflow.checksums;
+    }
+
+    @Override
+    protected String getSignFileExtension(File artifactFile) {
+        return "asc";
+    }
+
+    @Override
+    protected void sign0(Logger logger, File artifactFile, File signFile) throws Exception {
+        sign0(logger, artifactFile, signFile, new MessageDigest[0]);
+    }
+
+    @Override
+    protected MessageDigest newSignatureDigest() throws Exception {
+        return PgpHashAlgorithm.byName(workflow.digestAlgorithm).newDigest();
+    }
+
+    @Override
+    protected void signDigest(Logger logger, File artifactFile, File signFile, MessageDigest digest) throws Exception {
+        PgpKey key = this.signingKey;
+        PgpHashAlgorithm hashAlgorithm = PgpHashAlgorithm.byName(workflow.digestAlgorithm);
+        PgpSignatureBuilder builder = new PgpSignatureBuilder(
+                key.algorithm, hashAlgorithm, key.fingerprint,
+                System.currentTimeMillis() / 1000
+        );
+        byte[] hash = builder.finish(digest);
+        long start = System.nanoTime();
+        Signature rsa = Signature.getInstance("NONEwithRSA");
+        rsa.initSign(privateKey);
+        rsa.update(hashAlgorithm.toDigestInfo(hash));
+        byte[] value = rsa.sign();
+        SignMetrics.record(SignMetrics.Phase.SIGN, start);
+        Files.write(signFile.toPath(), builder.buildArmored(hash, value));
+    }
+
+    @Override
+    public String toString() {
+        return "InProcessSignerImpl{key=" + signingKey + "}";
+    }
+}
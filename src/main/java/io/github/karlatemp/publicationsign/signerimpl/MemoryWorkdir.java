@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/MemoryWorkdir.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import org.gradle.api.logging.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A private directory on a memory-backed filesystem (`/dev/shm`, `$XDG_RUNTIME_DIR`), for the homedir of gpg.
+ * <p>
+ * The directory is locked while in use, and deleted when closed. Directories left by killed builds
+ * (lock not held) are deleted when creating a new one.
+ */
+final class MemoryWorkdir implements Closeable {
+    private static final String PREFIX = "psign-";
+    private static final String LOCK = ".lock";
+
+    final File dir;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private MemoryWorkdir(File dir, FileChannel lockChannel, FileLock lock) {
+        this.dir = dir;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    private static List<File> roots() {
+        List<File> roots = new ArrayList<>();
+        if (!System.getProperty("os.name").toLowerCase().contains("linux")) return roots;
+        roots.add(new File("/dev/shm"));
+        String runtimeDir = System.getenv("XDG_RUNTIME_DIR");
+        if (runtimeDir != null) roots.add(new File(runtimeDir));
+        return roots;
+    }
+
+    /**
+     * @return {@code null} if no memory-backed filesystem available
+     */
+    static MemoryWorkdir create(File workingDir, Logger logger) {
+        String name;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(workingDir.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            name = PREFIX + String.format("%040x", new BigInteger(1, digest.digest())).substring(0, 12) + "-";
+        } catch (Exception e) {
+            name = PREFIX;
+        }
+        for (File root : roots()) {
+            if (!root.isDirectory() || !root.canWrite()) continue;
+            cleanStale(root, logger);
+            Path dir = null;
+            try {
+                dir = Files.createTempDirectory(root.toPath(), name, GpgSignerImpl.dirPermissions);
+                FileChannel channel = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                return new MemoryWorkdir(dir.toFile(), channel, channel.lock());
+            } catch (IOException | UnsupportedOperationException e) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("[GPG Signer] Failed to create working dir in " + root, e);
+                }
+                if (dir != null) {
+                    delete(dir.toFile(), logger);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void cleanStale(File root, Logger logger) {
+        File[] dirs = root.listFiles((file, name) -> name.startsWith(PREFIX));
+        if (dirs == null) return;
+        for (File dir : dirs) {
+            if (!dir.isDirectory() || !dir.canWrite()) continue;
+            try (FileChannel channel = FileChannel.open(new File(dir, LOCK).toPath(), StandardOpenOption.WRITE)) {
+                FileLock lock = channel.tryLock();
+                if (lock == null) continue; // In use by another build
+                if (logger.isInfoEnabled()) {
+                    logger.info("[GPG Signer] Deleting stale working dir " + dir);
+                }
+                delete(dir, logger);
+            } catch (NoSuchFileException e) {
+                // Not created completely, or being deleted
+            } catch (IOException | OverlappingFileLockException e) {
+                // In use by this jvm
+            }
+        }
+    }
+
+    private static void delete(File dir, Logger logger) {
+        try {
+            GpgHomedirSnapshot.clean(dir);
+            Files.deleteIfExists(dir.toPath());
+        } catch (IOException e) {
+            if (logger != null && logger.isWarnEnabled()) {
+                logger.warn("[GPG Signer] Failed to delete " + dir, e);
+            }
+        }
+    }
+
+    /**
+     * Delete the directory. Processes using it (gpg-agent) should be stopped first.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            GpgHomedirSnapshot.clean(dir);
+            Files.deleteIfExists(dir.toPath());
+        } finally {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/RemoteSignerConnection.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pipelined connection to {@link RemoteSignerDaemon}.
+ * <p>
+ * The protocol is line based (UTF-8), requests are sent without waiting for previous responses,
+ * responses are matched by request ids and may arrive out of order:
+ * <pre>
+ * C: AUTH &lt;token&gt;                          (if the daemon requires a token)
+ * C: KEY &lt;id&gt;
+ * S: KEY &lt;id&gt; &lt;fingerprint&gt; &lt;algorithm&gt;
+ * C: PUBKEY &lt;id&gt;
+ * S: PUBKEY &lt;id&gt; &lt;hex of `gpg --export` of the key&gt;
+ * C: SIGN &lt;id&gt; &lt;hash algorithm&gt; &lt;hash hex&gt;
+ * S: SIG &lt;id&gt; &lt;mpi hex&gt;[,&lt;mpi hex&gt;]
+ * S: ERR &lt;id&gt; &lt;message&gt;
+ * </pre>
+ */
+class RemoteSignerConnection implements Closeable {
+    static final int DEFAULT_PORT = 7650;
+
+    /**
+     * Failure reported by the daemon, the connection is still usable
+     */
+    static class RemoteException extends IOException {
+        RemoteException(String message) {
+            super(message);
+        }
+    }
+
+    private final Socket socket;
+    private final Writer writer;
+    private final Map<Long, CompletableFuture<String[]>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private volatile IOException broken;
+
+    private RemoteSignerConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        Thread reader = new Thread(this::readResponses, "PublicationSign remote signer " + socket.getRemoteSocketAddress());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    static InetSocketAddress parseAddress(String address) {
+        int split = address.lastIndexOf(':');
+        if (split == -1) {
+            return new InetSocketAddress(address, DEFAULT_PORT);
+        }
+        return new InetSocketAddress(address.substring(0, split), Integer.parseInt(address.substring(split + 1)));
+    }
+
+    static RemoteSignerConnection connect(InetSocketAddress address, String token, int timeout) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(address, timeout);
+            RemoteSignerConnection connection = new RemoteSignerConnection(socket);
+            if (token != null) {
+                connection.send("AUTH " + token);
+            }
+            return connection;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    static byte[] unhex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid hex " + hex);
+        }
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return result;
+    }
+
+    boolean isBroken() {
+        return broken != null;
+    }
+
+    private synchronized void send(String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * @param request Request without id, e.g. {@code SIGN 10 ABCD}
+     * @return The response fields after the id
+     */
+    CompletableFuture<String[]> request(String request) {
+        long id = ids.incrementAndGet();
+        CompletableFuture<String[]> response = new CompletableFuture<>();
+        pending.put(id, response);
+        int space = request.indexOf(' ');
+        String line = space == -1
+                ? request + " " + id
+                : request.substring(0, space) + " " + id + request.substring(space);
+        try {
+            IOException broken = this.broken;
+            if (broken != null) throw broken;
+            send(line);
+            broken = this.broken;
+            if (broken != null && pending.remove(id) != null) {
+                // Broken after sent, missed by the reader
+                response.completeExceptionally(broken);
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    private void readResponses() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ", 3);
+                if (fields.length < 2) continue;
+                CompletableFuture<String[]> response;
+                try {
+                    response = pending.remove(Long.parseLong(fields[1]));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (response == null) continue;
+                if (fields[0].equals("ERR")) {
+                    response.completeExceptionally(new RemoteException(fields.length > 2 ? fields[2] : "Unknown error"));
+                } else {
+                    response.complete(fields.length > 2 ? fields[2].split(" ") : new String[0]);
+                }
+            }
+            broken = new EOFException("Connection closed by signing daemon");
+        } catch (IOException e) {
+            broken = e;
+        }
+        // Fail all in-flight requests, they will be retried by another connection
+        for (Long id : pending.keySet()) {
+            CompletableFuture<String[]> response = pending.remove(id);
+            if (response != null) {
+                response.completeExceptionally(broken);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (broken == null) {
+            broken = new IOException("Connection closed");
+        }
+        socket.close();
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/RemoteSignerDaemon.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import io.github.karlatemp.publicationsign.GpgSignerWorkflow;
+import io.github.karlatemp.publicationsign.pgp.PgpHashAlgorithm;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A minimal signing daemon for {@link RemoteSignerImpl}, signs hashes by gpg-agent of a homedir prepared
+ * by {@link GpgSignerImpl} (see {@link GpgAgentSignerImpl}).
+ * <p>
+ * For testing the remote signing on one machine, or as reference of real signing services.
+ * Requests of all connections are processed concurrently, responses are written once ready.
+ * <p>
+ * Usage: {@code RemoteSignerDaemon [--bind 127.0.0.1] [--port 7650] [--token-env NAME] [--passphrase-env NAME] --workdir DIR --key FILE...}
+ */
+public class RemoteSignerDaemon implements Closeable {
+    private final GpgAgentSignerImpl signer;
+    private final ServerSocket server;
+    private final String token;
+    private final Logger logger;
+    private final ExecutorService workers;
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private byte[] publicKey;
+
+    private RemoteSignerDaemon(GpgAgentSignerImpl signer, ServerSocket server, String token, Logger logger) {
+        this.signer = signer;
+        this.server = server;
+        this.token = token;
+        this.logger = logger;
+        this.workers = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "PublicationSign signing daemon worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Import keys of {@code workflow}, and start accepting connections in background
+     *
+     * @param token The token clients must send before requests, {@code null} for no authentication
+     */
+    public static RemoteSignerDaemon start(GpgSignerWorkflow workflow, InetSocketAddress address, String token, Logger logger) throws Exception {
+        GpgAgentSignerImpl signer = new GpgAgentSignerImpl(workflow);
+        signer.initialize(logger);
+        ServerSocket server = new ServerSocket();
+        try {
+            server.bind(address);
+        } catch (IOException e) {
+            server.close();
+            signer.close();
+            throw e;
+        }
+        RemoteSignerDaemon daemon = new RemoteSignerDaemon(signer, server, token, logger);
+        Thread acceptor = new Thread(daemon::accept, "PublicationSign signing daemon " + server.getLocalSocketAddress());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.lifecycle("[Signing Daemon] Listening on " + server.getLocalSocketAddress() + " with key " + signer.getSigningKey());
+        return daemon;
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            Socket client;
+            try {
+                client = server.accept();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    logger.error("[Signing Daemon] Failed to accept connection", e);
+                }
+                return;
+            }
+            clients.add(client);
+            workers.execute(() -> serve(client));
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket socket = client) {
+            socket.setTcpNoDelay(true);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            boolean authenticated = token == null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] request = line.split(" ");
+                if (request[0].equals("AUTH")) {
+                    authenticated = token != null && request.length == 2
+                            && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), request[1].getBytes(StandardCharsets.UTF_8));
+                    continue;
+                }
+                if (request.length < 2) continue;
+                String id = request[1];
+                if (!authenticated) {
+                    respond(writer, "ERR " + id + " Unauthorized");
+                    continue;
+                }
+                switch (request[0]) {
+                    case "KEY": {
+                        GpgSignerImpl.SigningKey key = signer.getSigningKey();
+                        respond(writer, "KEY " + id + " " + key.fingerprint + " " + key.algorithm);
+                        break;
+                    }
+                    case "PUBKEY": {
+                        workers.execute(() -> respond(writer, publicKey(id)));
+                        break;
+                    }
+                    case "SIGN": {
+                        workers.execute(() -> respond(writer, sign(id, request)));
+                        break;
+                    }
+                    default:
+                        respond(writer, "ERR " + id + " Unknown request " + request[0]);
+                }
+            }
+        } catch (SocketException ignored) {
+            // Closed
+        } catch (IOException e) {
+            logger.warn("[Signing Daemon] Connection " + client.getRemoteSocketAddress() + " failed", e);
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    private String publicKey(String id) {
+        try {
+            byte[] publicKey;
+            synchronized (this) {
+                publicKey = this.publicKey;
+                if (publicKey == null) {
+                    publicKey = this.publicKey = signer.exportPublicKey(logger);
+                }
+            }
+            return "PUBKEY " + id + " " + AssuanClient.hex(publicKey);
+        } catch (Exception e) {
+            logger.warn("[Signing Daemon] Failed to export public key", e);
+            return "ERR " + id + " " + String.valueOf(e.getMessage()).replace('\n', ' ');
+        }
+    }
+
+    private String sign(String id, String[] request) {
+        try {
+            if (request.length != 4) {
+                return "ERR " + id + " Bad request";
+            }
+            PgpHashAlgorithm hashAlgorithm = PgpHashAlgorithm.byId(Integer.parseInt(request[2]));
+            byte[] hash = RemoteSignerConnection.unhex(request[3]);
+            if (hash.length != hashAlgorithm.newDigest().getDigestLength()) {
+                return "ERR " + id + " Bad hash length";
+            }
+            byte[][] signature = signer.signHash(logger, hashAlgorithm, hash);
+            StringBuilder response = new StringBuilder("SIG ").append(id).append(' ');
+            for (int i = 0; i < signature.length; i++) {
+                if (i != 0) response.append(',');
+                response.append(AssuanClient.hex(signature[i]));
+            }
+            return response.toString();
+        } catch (Exception e) {
+            logger.warn("[Signing Daemon] Failed to sign request " + id, e);
+            return "ERR " + id + " " + String.valueOf(e.getMessage()).replace('\n', ' ');
+        }
+    }
+
+    private static void respond(Writer writer, String response) {
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (writer) {
+            try {
+                writer.write(response);
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException ignored) {
+                // Connection closed, the client will resend the request
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Socket client : clients) {
+            client.close();
+        }
+        workers.shutdownNow();
+        signer.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        GpgSignerWorkflow workflow = new GpgSignerWorkflow();
+        workflow.signerType = GpgSignerWorkflow.SIGNER_GPG_AGENT;
+        String bind = "127.0.0.1";
+        int port = RemoteSignerConnection.DEFAULT_PORT;
+        String tokenEnv = null;
+        List<File> keys = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--bind":
+                    bind = value;
+                    break;
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--token-env":
+                    tokenEnv = value;
+                    break;
+                case "--passphrase-env":
+                    workflow.passphraseEnv = value;
+                    break;
+                case "--workdir":
+                    workflow.workingDir = new File(value);
+                    break;
+                case "--key":
+                    keys.add(new File(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            i++;
+        }
+        if (workflow.workingDir == null || keys.isEmpty()) {
+            System.err.println("Usage: RemoteSignerDaemon [--bind 127.0.0.1] [--port 7650] [--token-env NAME] [--passphrase-env NAME] --workdir DIR --key FILE...");
+            System.exit(1);
+        }
+        workflow.keys = keys;
+        String token = tokenEnv == null ? null : System.getenv(tokenEnv);
+        if (tokenEnv != null && (token == null || token.isEmpty())) {
+            // Never fall back to serving without authentication
+            throw new IllegalArgumentException("Environment variable " + tokenEnv + " of --token-env is not set or empty");
+        }
+        RemoteSignerDaemon daemon = start(workflow, new InetSocketAddress(bind, port), token, Logging.getLogger(RemoteSignerDaemon.class));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException ignored) {
+            }
+        }));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.main/RemoteSignerImpl.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package io.github.karlatemp.publicationsign.signerimpl;
+
+import io.github.karlatemp.publicationsign.GpgSignerWorkflow;
+import io.github.karlatemp.publicationsign.pgp.PgpHashAlgorithm;
+import io.github.karlatemp.publicationsign.pgp.PgpKey;
+import io.github.karlatemp.publicationsign.pgp.PgpKeyRing;
+import io.github.karlatemp.publicationsign.pgp.PgpSignatureBuilder;
+import io.github.karlatemp.publicationsign.pgp.PgpVerifier;
+import io.github.karlatemp.publicationsign.signer.AbstractArtifactSigner;
+import io.github.karlatemp.publicationsign.signer.ArtifactDigests;
+import io.github.karlatemp.publicationsign.signer.SignEvents;
+import io.github.karlatemp.publicationsign.signer.SignExecutor;
+import io.github.karlatemp.publicationsign.signer.SignMetrics;
+import io.github.karlatemp.publicationsign.signer.SignatureCache;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Sign artifacts by a signing daemon ({@link RemoteSignerDaemon}), private keys are never present on build machines.
+ * <p>
+ * Artifacts are hashed in JVM, only the hash is sent to the daemon, then the OpenPGP signature packet is written by ourselves
+ * after the returned signature verified, unless {@link GpgSignerWorkflow#skipVerify}.
+ * <p>
+ * Requests are pipelined on {@link GpgSignerWorkflow#remoteConnections} connections: in a batch, artifacts are hashed
+ * &amp; sent ahead (up to {@link GpgSignerWorkflow#remotePipelineDepth} requests in flight), and collected when
+ * the artifact is signed. Requests of broken connections are resent by reconnected connections.
+ */
+public class RemoteSignerImpl extends AbstractArtifactSigner {
+    private final GpgSignerWorkflow workflow;
+
+    private transient RemoteSignerConnection[] connections;
+    private transient int nextConnection;
+    private transient String fingerprint;
+    private transient byte[] fingerprintBytes;
+    private transient int algorithm;
+    private transient SignatureCache signatureCache;
+    private transient ExecutorService pipeline;
+    private transient Semaphore inFlight;
+    private transient Map<File, Prepared> prepared;
+    private transient PgpVerifier verifier;
+
+    /**
+     * An artifact hashed &amp; sent ahead of signing
+     */
+    private static class Prepared {
+        final PgpSignatureBuilder builder;
+        final CompletableFuture<byte[][]> signature = new CompletableFuture<>();
+        final long length, lastModified;
+        // Read by the signing thread if the signature not responded in time
+        volatile byte[] hash;
+        volatile long hashNanos;
+
+        Prepared(PgpSignatureBuilder builder, File artifactFile) {
+            this.builder = builder;
+            this.length = artifactFile.length();
+            this.lastModified = artifactFile.lastModified();
+        }
+
+        boolean isValid(File artifactFile) {
+            return artifactFile.length() == length && artifactFile.lastModified() == lastModified;
+        }
+    }
+
+    public RemoteSignerImpl(GpgSignerWorkflow workflow) {
+        this.workflow = workflow;
+    }
+
+    @Override
+    public void configure(Project project) {
+        if (workflow.workingDir == null) {
+            workflow.workingDir = GpgSignerImpl.getDefaultWorkdir(project);
+        }
+    }
+
+    @Override
+    public synchronized void initialize(Logger logger) throws Exception {
+        if (connections != null) return;
+        if (workflow.remoteSigner == null) {
+            logger.error("[Remote Signer] Address of signing daemon not specified. Please setup `remoteSigner` of workflow");
+            throw new RuntimeException("No signing daemon");
+        }
+        RemoteSignerConnection[] connections = new RemoteSignerConnection[Math.max(1, workflow.remoteConnections)];
+        try {
+            for (int i = 0; i < connections.length; i++) {
+                connections[i] = connect();
+            }
+            String[] key = await(connections[0].request("KEY"));
+            fingerprint = key[0];
+            fingerprintBytes = RemoteSignerConnection.unhex(key[0]);
+            algorithm = Integer.parseInt(key[1]);
+            if (!workflow.skipVerify) {
+                verifier = newVerifier(logger, connections[0]);
+            }
+        } catch (Throwable e) {
+            for (RemoteSignerConnection connection : connections) {
+                if (connection != null) connection.close();
+            }
+            throw e;
+        }
+        this.connections = connections;
+        int depth = Math.max(1, workflow.remotePipelineDepth);
+        inFlight = new Semaphore(depth);
+        prepared = new ConcurrentHashMap<>();
+        pipeline = Executors.newFixedThreadPool(connections.length, task -> {
+            Thread thread = new Thread(task, "PublicationSign remote signer pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        signatureCache = workflow.newSignatureCache();
+        if (logger.isInfoEnabled()) {
+            logger.info("[Remote Signer] Using key " + fingerprint + " of " + workflow.remoteSigner);
+        }
+    }
+
+    /**
+     * The verifier of signatures returned by the daemon, by public keys of {@link GpgSignerWorkflow#keys}
+     * (pinning the key of daemon), or exported by the daemon.
+     *
+     * @return {@code null} if signatures of the key can't be verified in jvm
+     */
+    private PgpVerifier newVerifier(Logger logger, RemoteSignerConnection connection) throws Exception {
+        Collection<File> keys = workflow.keys;
+        PgpKeyRing keyRing;
+        if (keys != null && !keys.isEmpty()) {
+            keyRing = PgpKeyRing.load(keys);
+        } else {
+            try {
+                keyRing = PgpKeyRing.load(RemoteSignerConnection.unhex(await(connection.request("PUBKEY"))[0]));
+            } catch (RemoteSignerConnection.RemoteException e) {
+                throw rejected(e);
+            }
+        }
+        PgpKey key = keyRing.findKey(fingerprintBytes);
+        if (key == null) {
+            throw new IllegalStateException("Signing key " + fingerprint + " of daemon " + workflow.remoteSigner + " not found in "
+                    + (keys != null && !keys.isEmpty() ? keys.toString() : "public keys exported by the daemon"));
+        }
+        if (key.algorithm != PgpSignatureBuilder.PUBKEY_RSA) {
+            logger.warn("[Remote Signer] Signatures of " + key + " can't be verified in jvm, only RSA keys are supported");
+            return null;
+        }
+        return new PgpVerifier(keyRing);
+    }
+
+    /**
+     * Verify signature values returned by the daemon before written
+     */
+    private void verify(File artifactFile, PgpHashAlgorithm hashAlgorithm, byte[] hash, byte[][] signature) throws Exception {
+        PgpVerifier verifier = this.verifier;
+        if (verifier == null) return;
+        SignEvents.verifyStarted(this, artifactFile);
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            verifier.verifyHash(fingerprintBytes, hashAlgorithm, hash, signature);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            SignMetrics.record(SignMetrics.Phase.VERIFY, start);
+            SignEvents.verifyFinished(this, artifactFile, System.nanoTime() - start, failure);
+        }
+    }
+
+    private RemoteSignerConnection connect() throws IOException {
+        InetSocketAddress address = RemoteSignerConnection.parseAddress(workflow.remoteSigner);
+        String token = workflow.remoteSignerTokenEnv == null ? null : System.getenv(workflow.remoteSignerTokenEnv);
+        return RemoteSignerConnection.connect(address, token, workflow.remoteTimeout);
+    }
+
+    /**
+     * Round-robin, broken connections are reopened
+     */
+    private synchronized RemoteSignerConnection connection() throws IOException {
+        int index = nextConnection++ % connections.length;
+        RemoteSignerConnection connection = connections[index];
+        if (connection.isBroken()) {
+            connection.close();
+            connections[index] = connection = connect();
+        }
+        return connection;
+    }
+
+    private String[] await(CompletableFuture<String[]> response) throws IOException, InterruptedException {
+        try {
+            return response.get(workflow.remoteTimeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        } catch (TimeoutException e) {
+            response.cancel(false);
+            throw new IOException("Signing daemon not responded in " + workflow.remoteTimeout + "ms");
+        }
+    }
+
+    private CompletableFuture<String[]> send(PgpHashAlgorithm hashAlgorithm, byte[] hash) {
+        try {
+            return connection().request("SIGN " + hashAlgorithm.id + " " + AssuanClient.hex(hash));
+        } catch (IOException e) {
+            CompletableFuture<String[]> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private IOException rejected(RemoteSignerConnection.RemoteException e) {
+        return new IOException("Signing daemon " + workflow.remoteSigner + " rejected: " + e.getMessage(), e);
+    }
+
+    /**
+     * Sign the final hash, resend the request up to {@code retries} times if its connection broken
+     */
+    private byte[][] signHash(Logger logger, PgpHashAlgorithm hashAlgorithm, byte[] hash, int retries) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return parseSignature(await(send(hashAlgorithm, hash)));
+            } catch (RemoteSignerConnection.RemoteException e) {
+                throw rejected(e);
+            } catch (IOException e) {
+                if (attempt >= retries) throw e;
+                if (logger.isInfoEnabled()) {
+                    logger.info("[Remote Signer] Request failed, retrying: " + e);
+                }
+            }
+        }
+    }
+
+    private static byte[][] parseSignature(String[] response) {
+        String[] values = response[0].split(",");
+        byte[][] mpis = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            mpis[i] = RemoteSignerConnection.unhex(values[i]);
+        }
+        return mpis;
+    }
+
+    private PgpSignatureBuilder newBuilder(PgpHashAlgorithm hashAlgorithm) {
+        return new PgpSignatureBuilder(algorithm, hashAlgorithm, fingerprintBytes, System.currentTimeMillis() / 1000);
+    }
+
+    @Override
+    public List<CompletableFuture<SignResult>> signBatch(Logger logger, List<File> artifactFiles, SignExecutor executor) {
+        // Artifacts restored from cache need not be signed
+        if (getSignatureCache() == null && artifactFiles.size() > 1) {
+            for (File artifactFile : artifactFiles) {
+                if (!artifactFile.isFile()) continue;
+                Prepared prepared = new Prepared(newBuilder(PgpHashAlgorithm.byName(workflow.digestAlgorithm)), artifactFile);
+                this.prepared.put(artifactFile, prepared);
+                pipeline.execute(() -> prepare(logger, artifactFile, prepared));
+            }
+        }
+        return super.signBatch(logger, artifactFiles, executor);
+    }
+
+    private void prepare(Logger logger, File artifactFile, Prepared prepared) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            prepared.signature.completeExceptionally(e);
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            PgpHashAlgorithm hashAlgorithm = prepared.builder.getHashAlgorithm();
+            MessageDigest digest = hashAlgorithm.newDigest();
+            ArtifactDigests.update(artifactFile, digest);
+            byte[] hash = prepared.builder.finish(digest);
+            prepared.hashNanos = System.nanoTime() - start;
+            prepared.hash = hash;
+            send(hashAlgorithm, hash).whenComplete((response, failure) -> {
+                inFlight.release();
+                if (failure == null) {
+                    prepared.signature.complete(parseSignature(response));
+                } else if (failure instanceof RemoteSignerConnection.RemoteException) {
+                    prepared.signature.completeExceptionally(rejected((RemoteSignerConnection.RemoteException) failure));
+                } else if (workflow.remoteRetries <= 0) {
+                    prepared.signature.completeExceptionally(failure);
+                } else {
+                    // Connection broken, resend by a reconnected one
+                    pipeline.execute(() -> {
+                        try {
+                            prepared.signature.complete(signHash(logger, hashAlgorithm, hash, workflow.remoteRetries - 1));
+                        } catch (Throwable e) {
+                            prepared.signature.completeExceptionally(e);
+                        }
+                    });
+                }
+            });
+        } catch (Throwable e) {
+            inFlight.release();
+            prepared.signature.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    protected SignatureCache getSignatureCache() {
+        return signatureCache;
+    }
+
+    @Override
+    public String getSigningKeyFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public String getPoolKey() {
+        return getClass().getName() + " " + workflow.getPoolKey();
+    }
+
+    @Override
+    public synchronized boolean isPoolValid() {
+        if (connections == null) return true;
+        // The daemon may be restarted with another key
+        try {
+            return fingerprint.equals(await(connection().request("KEY"))[0]);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getConfigurationKey() {
+        return workflow.getConfigurationKey();
+    }
+
+    @Override
+    public List<String> getChecksums() {
+        return workflow.checksums == null ? Collections.emptyList() : workflow.checksums;
+    }
+
+    @Override
+    protected String getSignFileExtension(File artifactFile) {
+        return "asc";
+    }
+
+    @Override
+    protected void sign0(Logger logger, File artifactFile, File signFile) throws Exception {
+        sign0(logger, artifactFile, signFile, new MessageDigest[0]);
+    }
+
+    @Override
+    protected boolean sign0(Logger logger, File artifactFile, File signFile, MessageDigest[] digests) throws Exception {
+        Map<File, Prepared> prepared = this.prepared;
+        Prepared ahead = prepared == null ? null : prepared.get(artifactFile);
+        if (ahead != null) {
+            try {
+                if (ahead.isValid(artifactFile)) {
+                    return signPrepared(logger, artifactFile, signFile, digests, ahead);
+                }
+            } finally {
+                prepared.remove(artifactFile, ahead);
+            }
+        }
+        return super.sign0(logger, artifactFile, signFile, digests);
+    }
+
+    private boolean signPrepared(Logger logger, File artifactFile, File signFile, MessageDigest[] digests, Prepared ahead) throws Exception {
+        long start = System.nanoTime();
+        PgpHashAlgorithm hashAlgorithm = ahead.builder.getHashAlgorithm();
+        byte[][] signature;
+        byte[] hash;
+        try {
+            signature = ahead.signature.get(workflow.remoteTimeout, TimeUnit.MILLISECONDS);
+            hash = ahead.hash;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        } catch (TimeoutException e) {
+            // The daemon stopped answering the connection, or the request is still queued
+            ahead.signature.cancel(false);
+            hash = ahead.hash;
+            if (hash == null) {
+                return super.sign0(logger, artifactFile, signFile, digests);
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info("[Remote Signer] Signing daemon not responded " + artifactFile + " in " + workflow.remoteTimeout + "ms, resending");
+            }
+            signature = signHash(logger, hashAlgorithm, hash, workflow.remoteRetries);
+        }
+        SignMetrics.record(SignMetrics.Phase.HASH, System.nanoTime() - ahead.hashNanos);
+        SignMetrics.record(SignMetrics.Phase.SIGN, start);
+        verify(artifactFile, hashAlgorithm, hash, signature);
+        Files.write(signFile.toPath(), ahead.builder.buildArmored(hash, signature));
+        // Checksums are calculated by another read
+        return false;
+    }
+
+    @Override
+    protected MessageDigest newSignatureDigest() throws Exception {
+        return PgpHashAlgorithm.byName(workflow.digestAlgorithm).newDigest();
+    }
+
+    @Override
+    protected void signDigest(Logger logger, File artifactFile, File signFile, MessageDigest digest) throws Exception {
+        PgpHashAlgorithm hashAlgorithm = PgpHashAlgorithm.byName(workflow.digestAlgorithm);
+        PgpSignatureBuilder builder = newBuilder(hashAlgorithm);
+        byte[] hash = builder.finish(digest);
+        long start = System.nanoTime();
+        byte[][] signature = signHash(logger, hashAlgorithm, hash, workflow.remoteRetries);
+        SignMetrics.record(SignMetrics.Phase.SIGN, start);
+        verify(artifactFile, hashAlgorithm, hash, signature);
+        Files.write(signFile.toPath(), builder.buildArmored(hash, signature));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (pipeline != null) {
+            pipeline.shutdownNow();
+            pipeline = null;
+        }
+        if (prepared != null) {
+            // Requests never answered, or not sent yet
+            for (Prepared ahead : prepared.values()) {
+                ahead.signature.completeExceptionally(new IOException("Remote signer closed"));
+            }
+            prepared.clear();
+        }
+        if (connections != null) {
+            for (RemoteSignerConnection connection : connections) {
+                connection.close();
+            }
+            connections = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteSignerImpl{daemon=" + workflow.remoteSigner + ", key=" + fingerprint + "}";
+    }
+}
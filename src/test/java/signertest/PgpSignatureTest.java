@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.test/PgpSignatureTest.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package signertest;
+
+import io.github.karlatemp.publicationsign.pgp.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class PgpSignatureTest {
+    private static final long BEFORE_EXPIRED = TestingKeys.BEFORE_EXPIRED;
+
+    private static PgpSignature parse(byte[] armored) throws Exception {
+        return PgpSignature.parse(PgpPacket.readPackets(armored).get(0).body);
+    }
+
+    @Test
+    public void loadKeyRing() throws Exception {
+        PgpKeyRing keyRing = TestingKeys.load();
+        Assertions.assertEquals(1, keyRing.getPrimaryKeys().size());
+
+        PgpKey key = keyRing.findSigningKey(null, BEFORE_EXPIRED);
+        Assertions.assertNotNull(key);
+        Assertions.assertEquals("94D51382C8BC0FD74CEE72B07ED89272B099AFC4", key.getFingerprintHex());
+        Assertions.assertTrue(key.hasSecret());
+        Assertions.assertFalse(key.isSecretProtected());
+
+        Assertions.assertNotNull(keyRing.findSigningKey("Publishcation-Sign-Test-Unit", BEFORE_EXPIRED));
+        Assertions.assertNotNull(keyRing.findSigningKey("0x7ED89272B099AFC4", BEFORE_EXPIRED));
+        Assertions.assertNull(keyRing.findSigningKey("someone-else", BEFORE_EXPIRED));
+        // Same as gpg, expired keys can't be used
+        Assertions.assertNull(keyRing.findSigningKey(null, System.currentTimeMillis() / 1000));
+    }
+
+    @Test
+    public void signatureRoundTrip() throws Exception {
+        PgpKeyRing keyRing = TestingKeys.load();
+        PgpKey key = keyRing.findSigningKey(null, BEFORE_EXPIRED);
+        byte[] data = "PublicationSign".getBytes(UTF_8);
+        byte[] armored = TestingKeys.sign(key, key.getPrivateKey(), PgpHashAlgorithm.SHA512, data);
+
+        Assertions.assertTrue(new String(armored, UTF_8).startsWith("-----BEGIN PGP SIGNATURE-----\n\n"));
+        List<PgpPacket> packets = PgpPacket.readPackets(armored);
+        Assertions.assertEquals(1, packets.size());
+        Assertions.assertEquals(PgpPacket.TAG_SIGNATURE, packets.get(0).tag);
+
+        PgpSignature signature = PgpSignature.parse(packets.get(0).body);
+        Assertions.assertNotNull(signature);
+        Assertions.assertEquals(0x00, signature.type);
+        Assertions.assertEquals(PgpHashAlgorithm.SHA512.id, signature.hashAlgorithm);
+        Assertions.assertEquals(BEFORE_EXPIRED, signature.creationTime);
+        Assertions.assertArrayEquals(key.fingerprint, signature.getIssuer());
+
+        MessageDigest digest = PgpHashAlgorithm.SHA512.newDigest();
+        digest.update(data);
+        Assertions.assertTrue(new PgpVerifier(keyRing).verify(signature, digest));
+    }
+
+    @Test
+    public void verifyInJvm() throws Exception {
+        PgpKeyRing keyRing = TestingKeys.load();
+        PgpKey key = keyRing.findSigningKey(null, BEFORE_EXPIRED);
+        byte[] data = "PublicationSign".getBytes(UTF_8);
+        PgpSignature signature = parse(TestingKeys.sign(key, key.getPrivateKey(), PgpHashAlgorithm.SHA256, data));
+
+        PgpVerifier verifier = new PgpVerifier(keyRing);
+        MessageDigest good = PgpHashAlgorithm.SHA256.newDigest();
+        good.update(data);
+        Assertions.assertTrue(verifier.verify(signature, good));
+
+        MessageDigest bad = PgpHashAlgorithm.SHA256.newDigest();
+        bad.update("Tampered".getBytes(UTF_8));
+        Assertions.assertThrows(SignatureException.class, () -> verifier.verify(signature, bad));
+    }
+
+    @Test
+    public void rejectInvalidSignatures() throws Exception {
+        PgpKeyRing keyRing = TestingKeys.load();
+        PgpKey key = keyRing.findSigningKey(null, BEFORE_EXPIRED);
+        byte[] data = "PublicationSign".getBytes(UTF_8);
+        PgpVerifier verifier = new PgpVerifier(keyRing);
+
+        // Not of a binary document
+        byte[] body = PgpPacket.readPackets(TestingKeys.sign(key, key.getPrivateKey(), PgpHashAlgorithm.SHA256, data)).get(0).body.clone();
+        body[1] = 0x01;
+        PgpSignature text = PgpSignature.parse(body);
+        MessageDigest digest = PgpHashAlgorithm.SHA256.newDigest();
+        digest.update(data);
+        SignatureException failure = Assertions.assertThrows(SignatureException.class, () -> verifier.verify(text, digest));
+        Assertions.assertTrue(failure.getMessage().contains("binary document"), failure.getMessage());
+
+        // Signed after the testing key expired (2023-06-30)
+        PgpSignature expired = parse(TestingKeys.sign(key, key.getPrivateKey(), PgpHashAlgorithm.SHA256, data, 1704067200L));
+        MessageDigest expiredDigest = PgpHashAlgorithm.SHA256.newDigest();
+        expiredDigest.update(data);
+        failure = Assertions.assertThrows(SignatureException.class, () -> verifier.verify(expired, expiredDigest));
+        Assertions.assertTrue(failure.getMessage().contains("expired"), failure.getMessage());
+    }
+
+    @Test
+    public void unlockProtectedKey() throws Exception {
+        PgpKeyRing keyRing = PgpKeyRing.load(Arrays.asList(new File(TestingKeys.KEYS, "keys-protected.asc")));
+        PgpKey key = keyRing.findSigningKey(null, BEFORE_EXPIRED);
+        Assertions.assertNotNull(key);
+        Assertions.assertTrue(key.isSecretProtected());
+        Assertions.assertThrows(UnsupportedOperationException.class, key::getPrivateKey);
+        Assertions.assertThrows(IllegalStateException.class, () -> key.getPrivateKey("wrong".toCharArray()));
+
+        byte[] data = "PublicationSign".getBytes(UTF_8);
+        // Generated after the other testing keys expired
+        PgpSignature signature = parse(TestingKeys.sign(key, key.getPrivateKey("publication-sign".toCharArray()), PgpHashAlgorithm.SHA256, data, key.created));
+        MessageDigest digest = PgpHashAlgorithm.SHA256.newDigest();
+        digest.update(data);
+        Assertions.assertTrue(new PgpVerifier(keyRing).verify(signature, digest));
+    }
+}
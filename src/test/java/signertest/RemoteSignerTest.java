@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.test/RemoteSignerTest.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package signertest;
+
+import io.github.karlatemp.publicationsign.GpgSignerWorkflow;
+import io.github.karlatemp.publicationsign.pgp.PgpKey;
+import io.github.karlatemp.publicationsign.pgp.PgpKeyRing;
+import io.github.karlatemp.publicationsign.pgp.PgpVerifier;
+import io.github.karlatemp.publicationsign.signer.ArtifactSigner;
+import io.github.karlatemp.publicationsign.signerimpl.RemoteSignerDaemon;
+import io.github.karlatemp.publicationsign.signerimpl.RemoteSignerImpl;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class RemoteSignerTest {
+    private static final Logger LOGGER = Logging.getLogger(RemoteSignerTest.class);
+
+    private static void gpg(File homedir, String... args) throws Exception {
+        List<String> cmd = new ArrayList<>(Arrays.asList("gpg", "--homedir", homedir.getPath(), "--batch"));
+        cmd.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(cmd).inheritIO().start();
+        Assertions.assertEquals(0, process.waitFor(), String.join(" ", cmd));
+    }
+
+    /**
+     * A fresh RSA key without passphrase, the testing keys expired
+     */
+    private static List<File> generateKeys(File dir) throws Exception {
+        File homedir = new File(dir, "gnupg");
+        Assertions.assertTrue(homedir.mkdirs());
+        Assertions.assertTrue(homedir.setReadable(false, false) && homedir.setReadable(true, true));
+        Assertions.assertTrue(homedir.setExecutable(false, false) && homedir.setExecutable(true, true));
+        File pub = new File(dir, "keys.pub");
+        File pri = new File(dir, "keys.pri");
+        try {
+            gpg(homedir, "--passphrase", "", "--quick-generate-key", "PublicationSign Remote <remote@test>", "rsa2048", "sign", "never");
+            gpg(homedir, "--output", pub.getPath(), "--export");
+            gpg(homedir, "--pinentry-mode", "loopback", "--passphrase", "", "--output", pri.getPath(), "--export-secret-keys");
+        } finally {
+            new ProcessBuilder("gpgconf", "--homedir", homedir.getPath(), "--kill", "gpg-agent").inheritIO().start().waitFor();
+        }
+        return Arrays.asList(pub, pri);
+    }
+
+    private static RemoteSignerDaemon startDaemon(File dir, List<File> keys) throws Exception {
+        GpgSignerWorkflow workflow = new GpgSignerWorkflow();
+        workflow.signerType = GpgSignerWorkflow.SIGNER_GPG_AGENT;
+        workflow.workingDir = new File(dir, "daemon");
+        workflow.keys = keys;
+        return RemoteSignerDaemon.start(workflow, new InetSocketAddress("127.0.0.1", 0), null, LOGGER);
+    }
+
+    private static GpgSignerWorkflow client(RemoteSignerDaemon daemon, File dir) {
+        GpgSignerWorkflow workflow = new GpgSignerWorkflow();
+        workflow.signerType = GpgSignerWorkflow.SIGNER_REMOTE;
+        workflow.remoteSigner = "127.0.0.1:" + daemon.getAddress().getPort();
+        workflow.workingDir = new File(dir, "client");
+        return workflow;
+    }
+
+    @Test
+    public void signByDaemon() throws Exception {
+        File dir = Files.createTempDirectory("psign-remote").toFile();
+        List<File> keys = generateKeys(dir);
+        List<File> artifacts = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            File artifact = new File(dir, "artifact-" + i + ".jar");
+            Files.write(artifact.toPath(), ("PublicationSign " + i).getBytes(UTF_8));
+            artifacts.add(artifact);
+        }
+        PgpVerifier verifier = new PgpVerifier(PgpKeyRing.load(keys));
+
+        try (RemoteSignerDaemon daemon = startDaemon(dir, keys)) {
+            // Verified by the public key exported by the daemon
+            RemoteSignerImpl signer = new RemoteSignerImpl(client(daemon, dir));
+            try {
+                signer.initialize(LOGGER);
+                // Pipelined
+                List<CompletableFuture<ArtifactSigner.SignResult>> results = signer.signBatch(LOGGER, artifacts, (artifactFile, signing) -> {
+                    CompletableFuture<ArtifactSigner.SignResult> result = new CompletableFuture<>();
+                    try {
+                        result.complete(signing.call());
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                    return result;
+                });
+                for (CompletableFuture<ArtifactSigner.SignResult> result : results) {
+                    ArtifactSigner.SignResult signResult = result.get();
+                    Assertions.assertTrue(verifier.verify(signResult.getArtifactFile(), signResult.getSignFile()));
+                }
+            } finally {
+                signer.close();
+            }
+
+            // Verified by the pinned public key
+            GpgSignerWorkflow pinned = client(daemon, dir);
+            pinned.keys = Collections.singletonList(keys.get(0));
+            signer = new RemoteSignerImpl(pinned);
+            try {
+                signer.initialize(LOGGER);
+                ArtifactSigner.SignResult signResult = signer.doSign(LOGGER, artifacts.get(0));
+                Assertions.assertTrue(verifier.verify(signResult.getArtifactFile(), signResult.getSignFile()));
+            } finally {
+                signer.close();
+            }
+
+            // Daemon signing by another key is rejected
+            GpgSignerWorkflow other = client(daemon, dir);
+            other.keys = Collections.singletonList(new File("testing/testing-keys/keys.pub"));
+            RemoteSignerImpl otherSigner = new RemoteSignerImpl(other);
+            Assertions.assertThrows(IllegalStateException.class, () -> otherSigner.initialize(LOGGER));
+            otherSigner.close();
+        }
+    }
+
+    /**
+     * A daemon returning bad signatures of the right key, or never answering signing requests if {@code silent}
+     */
+    private static ServerSocket startBadDaemon(PgpKey key, byte[] publicKey, boolean silent) throws Exception {
+        ServerSocket server = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    serve(server.accept(), key, publicKey, silent);
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    private static void serve(Socket accepted, PgpKey key, byte[] publicKey, boolean silent) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = accepted) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+                Writer writer = new OutputStreamWriter(socket.getOutputStream(), UTF_8);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] request = line.split(" ");
+                    switch (request[0]) {
+                        case "KEY":
+                            writer.write("KEY " + request[1] + " " + key.getFingerprintHex() + " " + key.algorithm + "\n");
+                            break;
+                        case "PUBKEY":
+                            writer.write("PUBKEY " + request[1] + " " + hex(publicKey) + "\n");
+                            break;
+                        default:
+                            if (silent) continue;
+                            byte[] value = new byte[256];
+                            Arrays.fill(value, (byte) 1);
+                            writer.write("SIG " + request[1] + " " + hex(value) + "\n");
+                    }
+                    writer.flush();
+                }
+            } catch (IOException ignored) {
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String hex(byte[] data) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : data) {
+            sb.append(String.format("%02X", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void rejectBadSignatures() throws Exception {
+        File dir = Files.createTempDirectory("psign-remote").toFile();
+        File pub = new File("testing/testing-keys/keys.pub");
+        PgpKey key = PgpKeyRing.load(Collections.singletonList(pub)).getPrimaryKeys().iterator().next();
+        File artifact = new File(dir, "artifact.jar");
+        Files.write(artifact.toPath(), "PublicationSign".getBytes(UTF_8));
+
+        try (ServerSocket server = startBadDaemon(key, Files.readAllBytes(pub.toPath()), false)) {
+            GpgSignerWorkflow workflow = new GpgSignerWorkflow();
+            workflow.signerType = GpgSignerWorkflow.SIGNER_REMOTE;
+            workflow.remoteSigner = "127.0.0.1:" + server.getLocalPort();
+            workflow.workingDir = new File(dir, "client");
+            RemoteSignerImpl signer = new RemoteSignerImpl(workflow);
+            try {
+                signer.initialize(LOGGER);
+                Assertions.assertThrows(SignatureException.class, () -> signer.doSign(LOGGER, artifact));
+                Assertions.assertFalse(new File(dir, "artifact.jar.asc").exists());
+            } finally {
+                signer.close();
+            }
+        }
+    }
+
+    @Test
+    public void timeoutPipelinedSignatures() throws Exception {
+        File dir = Files.createTempDirectory("psign-remote").toFile();
+        File pub = new File("testing/testing-keys/keys.pub");
+        PgpKey key = PgpKeyRing.load(Collections.singletonList(pub)).getPrimaryKeys().iterator().next();
+        List<File> artifacts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            File artifact = new File(dir, "artifact-" + i + ".jar");
+            Files.write(artifact.toPath(), ("PublicationSign " + i).getBytes(UTF_8));
+            artifacts.add(artifact);
+        }
+
+        try (ServerSocket server = startBadDaemon(key, Files.readAllBytes(pub.toPath()), true)) {
+            GpgSignerWorkflow workflow = new GpgSignerWorkflow();
+            workflow.signerType = GpgSignerWorkflow.SIGNER_REMOTE;
+            workflow.remoteSigner = "127.0.0.1:" + server.getLocalPort();
+            workflow.remoteTimeout = 500;
+            workflow.remoteRetries = 1;
+            workflow.workingDir = new File(dir, "client");
+            RemoteSignerImpl signer = new RemoteSignerImpl(workflow);
+            try {
+                signer.initialize(LOGGER);
+                List<CompletableFuture<ArtifactSigner.SignResult>> results = signer.signBatch(LOGGER, artifacts, (artifactFile, signing) -> {
+                    CompletableFuture<ArtifactSigner.SignResult> result = new CompletableFuture<>();
+                    try {
+                        result.complete(signing.call());
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                    return result;
+                });
+                for (CompletableFuture<ArtifactSigner.SignResult> result : results) {
+                    ExecutionException failure = Assertions.assertThrows(ExecutionException.class, () -> result.get(30, TimeUnit.SECONDS));
+                    Assertions.assertTrue(failure.getCause() instanceof IOException, String.valueOf(failure.getCause()));
+                }
+            } finally {
+                signer.close();
+            }
+        }
+    }
+}
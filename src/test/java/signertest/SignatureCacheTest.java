@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.test/SignatureCacheTest.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package signertest;
+
+import io.github.karlatemp.publicationsign.signer.SignatureCache;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class SignatureCacheTest {
+    private static final String SHA = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+    private static final String FPR = "94D51382C8BC0FD74CEE72B07ED89272B099AFC4";
+    private static final String CONFIG = "in-process digest=SHA256";
+    private static final Logger LOGGER = Logging.getLogger(SignatureCacheTest.class);
+
+    @Test
+    public void storeAndRestore() throws Exception {
+        File dir = Files.createTempDirectory("psign-cache").toFile();
+        File sign = new File(dir, "artifact.jar.asc");
+        Files.write(sign.toPath(), "signature".getBytes(UTF_8));
+
+        SignatureCache cache = new SignatureCache(new File(dir, "cache"), 0, 0);
+        Assertions.assertFalse(cache.restore(LOGGER, SHA, FPR, CONFIG, "asc", sign));
+        cache.store(LOGGER, SHA, FPR, CONFIG, "asc", sign);
+
+        Files.delete(sign.toPath());
+        Assertions.assertTrue(cache.restore(LOGGER, SHA, FPR, CONFIG, "asc", sign));
+        Assertions.assertEquals("signature", new String(Files.readAllBytes(sign.toPath()), UTF_8));
+        // Other key never reuses the signature
+        Assertions.assertFalse(cache.restore(LOGGER, SHA, "0000", CONFIG, "asc", sign));
+        // Neither another hash algorithm
+        Assertions.assertFalse(cache.restore(LOGGER, SHA, FPR, "in-process digest=SHA512", "asc", sign));
+    }
+
+    @Test
+    public void evictBySize() throws Exception {
+        File dir = Files.createTempDirectory("psign-cache").toFile();
+        File sign = new File(dir, "artifact.jar.asc");
+        Files.write(sign.toPath(), new byte[100]);
+
+        SignatureCache cache = new SignatureCache(new File(dir, "cache"), 150, 0);
+        cache.store(LOGGER, SHA, "OLD", CONFIG, "asc", sign);
+        File old = entry(dir, "OLD");
+        Assertions.assertTrue(old.setLastModified(System.currentTimeMillis() - 60_000));
+        cache.store(LOGGER, SHA, "NEW", CONFIG, "asc", sign);
+
+        cache.evict();
+        Assertions.assertFalse(old.exists());
+        Assertions.assertTrue(entry(dir, "NEW").exists());
+    }
+
+    private static File entry(File dir, String fingerprint) {
+        File[] entries = new File(dir, "cache/01").listFiles((d, name) -> name.startsWith(SHA + "-" + fingerprint + "-"));
+        Assertions.assertNotNull(entries);
+        return entries.length == 0 ? new File(dir, "cache/01/" + SHA + "-" + fingerprint + ".missing") : entries[0];
+    }
+}
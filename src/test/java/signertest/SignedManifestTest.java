@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.test/SignedManifestTest.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package signertest;
+
+import io.github.karlatemp.publicationsign.pgp.PgpHashAlgorithm;
+import io.github.karlatemp.publicationsign.pgp.PgpKey;
+import io.github.karlatemp.publicationsign.signer.SignedManifest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class SignedManifestTest {
+    @Test
+    public void verifySubset() throws Exception {
+        File dir = Files.createTempDirectory("psign-manifest").toFile();
+        File jar = new File(dir, "lib-1.0.jar");
+        File pom = new File(dir, "lib-1.0.pom");
+        Files.write(jar.toPath(), "jar".getBytes(UTF_8));
+        Files.write(pom.toPath(), "pom".getBytes(UTF_8));
+        File manifest = new File(dir, "lib-1.0-manifest.sha256");
+        SignedManifest.of(Arrays.asList(jar, pom)).write(manifest);
+
+        // Same format as `sha256sum`
+        Assertions.assertTrue(new String(Files.readAllBytes(manifest.toPath()), UTF_8).split("\n")[0]
+                .matches("[0-9a-f]{64}  lib-1\\.0\\.jar"));
+        SignedManifest read = SignedManifest.read(manifest);
+        Assertions.assertEquals(2, read.getDigests().size());
+        Assertions.assertTrue(read.verify(Collections.singletonList(pom)).isEmpty());
+
+        Files.write(jar.toPath(), "modified".getBytes(UTF_8));
+        Assertions.assertEquals(1, read.verify(Arrays.asList(jar, pom)).size());
+        Assertions.assertEquals(1, read.verify(Collections.singletonList(new File(dir, "unknown.jar"))).size());
+    }
+
+    @Test
+    public void publishedNames() throws Exception {
+        File build = Files.createTempDirectory("psign-manifest-build").toFile();
+        File pom = new File(build, "pom-default.xml");
+        File module = new File(build, "module.json");
+        Files.write(pom.toPath(), "pom".getBytes(UTF_8));
+        Files.write(module.toPath(), "module".getBytes(UTF_8));
+        Map<String, File> published = new LinkedHashMap<>();
+        published.put("lib-1.0.pom", pom);
+        published.put("lib-1.0.module", module);
+        File manifest = new File(build, "main.sha256");
+        SignedManifest.of(published).write(manifest);
+
+        // As downloaded from the repository
+        File download = Files.createTempDirectory("psign-manifest-download").toFile();
+        File downloadedPom = new File(download, "lib-1.0.pom");
+        File downloadedModule = new File(download, "lib-1.0.module");
+        Files.copy(pom.toPath(), downloadedPom.toPath());
+        Files.copy(module.toPath(), downloadedModule.toPath());
+        SignedManifest read = SignedManifest.read(manifest);
+        Assertions.assertEquals(Collections.emptyList(), read.verify(Arrays.asList(downloadedPom, downloadedModule)));
+        Assertions.assertEquals(1, read.verify(Collections.singletonList(pom)).size());
+    }
+
+    @Test
+    public void verifySignature() throws Exception {
+        File dir = Files.createTempDirectory("psign-manifest").toFile();
+        File jar = new File(dir, "lib-1.0.jar");
+        Files.write(jar.toPath(), "jar".getBytes(UTF_8));
+        File manifest = new File(dir, "lib-1.0-manifest.sha256");
+        SignedManifest.of(Collections.singletonList(jar)).write(manifest);
+
+        PgpKey key = TestingKeys.load().findSigningKey(null, TestingKeys.BEFORE_EXPIRED);
+        File signature = new File(dir, "lib-1.0-manifest.sha256.asc");
+        Files.write(signature.toPath(), TestingKeys.sign(key, key.getPrivateKey(), PgpHashAlgorithm.SHA256, Files.readAllBytes(manifest.toPath())));
+
+        Assertions.assertEquals(Collections.emptyList(), SignedManifest.verify(
+                manifest, signature, Collections.singletonList(new File(TestingKeys.KEYS, "keys.pub")), Collections.singletonList(jar)
+        ));
+        Files.write(manifest.toPath(), "0000  lib-1.0.jar\n".getBytes(UTF_8));
+        Assertions.assertEquals(1, SignedManifest.verify(
+                manifest, signature, Collections.singletonList(new File(TestingKeys.KEYS, "keys.pub")), Collections.singletonList(jar)
+        ).size());
+    }
+}
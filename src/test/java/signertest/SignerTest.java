@@ -120,6 +120,11 @@ public class SignerTest {
         TestUnit[] testUnits = {
                 TestUnit.of("normal-test", this::runTest),
                 TestUnit.of("without-signer", this::runTestWithNoSigner),
+                TestUnit.of("legacy-signer", this::runTestLegacySigner),
+                TestUnit.of("incremental-signing", this::runTestIncrementalSigning),
+                TestUnit.of("parallel-signing-failure", this::runTestParallelSigningFailure),
+                TestUnit.of("gpg-timeout", this::runTestGpgTimeout),
+                TestUnit.of("shared-signatures", this::runTestSharedSignatures),
         };
 
         TestRunner[] runners = {
@@ -194,6 +199,118 @@ public class SignerTest {
         );
     }
 
+    public void runTestLegacySigner(TestRunner runner, File workDir) throws Exception {
+        failOnFailed(runner.func.apply(GradleRunner.create())
+                .withProjectDir(workDir)
+                .withArguments("--info", "publishToMavenLocal", "--full-stacktrace")
+                .withPluginClasspath()
+                .forwardOutput()
+                .build()
+        );
+        File[] signs = new File(workDir, "build/libs").listFiles((dir, name) -> name.endsWith(".jar.legacy"));
+        Assertions.assertNotNull(signs);
+        Assertions.assertEquals(1, signs.length);
+        Assertions.assertEquals("signed for " + toValidName("legacy-signer-" + runner.name), FilesKt.readText(signs[0], UTF_8));
+    }
+
+    private static void writeSource(File workDir, int value) {
+        File source = new File(workDir, "src/main/java/pst/Incremental.java");
+        source.getParentFile().mkdirs();
+        FilesKt.writeText(source, "package pst;\n\npublic class Incremental {\n    public static int value() {\n        return " + value + ";\n    }\n}\n", UTF_8);
+    }
+
+    public void runTestIncrementalSigning(TestRunner runner, File workDir) throws Exception {
+        File log = new File(workDir, "signed.log");
+        log.delete();
+        writeSource(workDir, 1);
+        failOnFailed(runner.func.apply(GradleRunner.create())
+                .withProjectDir(workDir)
+                .withArguments("--info", "clean", "signAllPublications", "--full-stacktrace")
+                .withPluginClasspath()
+                .forwardOutput()
+                .build()
+        );
+        String signed = FilesKt.readText(log, UTF_8);
+        Assertions.assertTrue(signed.contains(".jar\n"), signed);
+        Assertions.assertTrue(signed.contains("pom-default.xml\n"), signed);
+
+        // Only the jar & the module metadata (holding checksums of jar) changed
+        log.delete();
+        writeSource(workDir, 2);
+        BuildResult rerun = runner.func.apply(GradleRunner.create())
+                .withProjectDir(workDir)
+                .withArguments("--info", "signAllPublications", "--full-stacktrace")
+                .withPluginClasspath()
+                .forwardOutput()
+                .build();
+        failOnFailed(rerun);
+        Assertions.assertTrue(rerun.getOutput().contains("Incremental signing: "));
+        signed = FilesKt.readText(log, UTF_8);
+        Assertions.assertTrue(signed.contains(".jar\n"), signed);
+        Assertions.assertFalse(signed.contains("pom-default.xml\n"), signed);
+    }
+
+    public void runTestParallelSigningFailure(TestRunner runner, File workDir) throws Exception {
+        BuildResult result = runner.func.apply(GradleRunner.create())
+                .withProjectDir(workDir)
+                .withArguments("--info", "--max-workers", "8", "clean", "signAllPublications", "--full-stacktrace")
+                .withPluginClasspath()
+                .forwardOutput()
+                .buildAndFail();
+        BuildTask task = result.task(":signPublicationMain");
+        Assertions.assertNotNull(task);
+        Assertions.assertEquals(TaskOutcome.FAILED, task.getOutcome());
+        // Failures of all artifacts reported together, not the first one only
+        String output = result.getOutput();
+        Assertions.assertTrue(output.contains("3 artifacts failed to sign:"));
+        Assertions.assertTrue(output.contains("refused pom-default.xml"));
+        Assertions.assertTrue(output.contains("refused module.json"));
+        Assertions.assertTrue(output.contains(".jar"));
+        // Waiting for the others timed out if signed one by one
+        Assertions.assertFalse(output.contains("TimeoutException"));
+    }
+
+    public void runTestGpgTimeout(TestRunner runner, File workDir) throws Exception {
+        // gpg is faked by a shell script
+        Assumptions.assumeFalse(Os.isFamily(Os.FAMILY_WINDOWS));
+        BuildResult result = runner.func.apply(GradleRunner.create())
+                .withProjectDir(workDir)
+                .withArguments("--info", "clean", "signAllPublications", "--full-stacktrace")
+                .withPluginClasspath()
+                .forwardOutput()
+                .buildAndFail();
+        Assertions.assertTrue(result.getOutput().contains("GPG command not finished in 2000ms, killed."));
+
+        File pidFile = new File(workDir, "fake-gpg/sleeping.pid");
+        Assertions.assertTrue(pidFile.isFile());
+        // Children are killed by Java 9+ only
+        if (System.getProperty("java.specification.version").startsWith("1.")) return;
+        String pid = FilesKt.readText(pidFile, UTF_8).trim();
+        for (int i = 0; new ProcessBuilder("kill", "-0", pid).start().waitFor() == 0; i++) {
+            if (i == 50) {
+                Assertions.fail("Child process " + pid + " of gpg not killed");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    public void runTestSharedSignatures(TestRunner runner, File workDir) throws Exception {
+        File log = new File(workDir, "signed.log");
+        log.delete();
+        // Sign tasks of two publications never depend on each other
+        failOnFailed(runner.func.apply(GradleRunner.create())
+                .withProjectDir(workDir)
+                .withArguments("--info", "clean", "signAllPublications", "--full-stacktrace")
+                .withPluginClasspath()
+                .forwardOutput()
+                .build()
+        );
+        List<String> signed = FilesKt.readLines(log, UTF_8);
+        Assertions.assertEquals(2, signed.size(), signed.toString());
+        Assertions.assertTrue(signed.stream().anyMatch(name -> name.endsWith("-x.jar")), signed.toString());
+        Assertions.assertTrue(signed.stream().anyMatch(name -> name.endsWith("-y.jar")), signed.toString());
+    }
+
     private static void failOnFailed(BuildResult signAllPublications) {
         List<BuildTask> tasks = signAllPublications.getTasks();
         if (tasks.isEmpty()) {
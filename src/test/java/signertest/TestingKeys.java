@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018-2021 Karlatemp. All rights reserved.
+ * @author Karlatemp <karlatemp@vip.qq.com> <https://github.com/Karlatemp>
+ *
+ * PublicationSign/PublicationSign.test/TestingKeys.java
+ *
+ * Use of this source code is governed by the MIT license that can be found via the following link.
+ *
+ * https://github.com/Karlatemp/PublicationSign/blob/master/LICENSE
+ */
+
+package signertest;
+
+import io.github.karlatemp.publicationsign.pgp.*;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Arrays;
+
+/**
+ * The keys of {@code testing/testing-keys}, and signing by them in jvm
+ */
+class TestingKeys {
+    static final File KEYS = new File("testing/testing-keys");
+    // The testing key expired at 2023-06-30
+    static final long BEFORE_EXPIRED = 1640995200L;
+
+    static PgpKeyRing load() throws Exception {
+        return PgpKeyRing.load(Arrays.asList(
+                new File(KEYS, "keys.pub"),
+                new File(KEYS, "keys.pri")
+        ));
+    }
+
+    /**
+     * An armored detached signature of {@code data}, created at {@link #BEFORE_EXPIRED}
+     */
+    static byte[] sign(PgpKey key, PrivateKey privateKey, PgpHashAlgorithm hashAlgorithm, byte[] data) throws Exception {
+        return sign(key, privateKey, hashAlgorithm, data, BEFORE_EXPIRED);
+    }
+
+    static byte[] sign(PgpKey key, PrivateKey privateKey, PgpHashAlgorithm hashAlgorithm, byte[] data, long creationTime) throws Exception {
+        PgpSignatureBuilder builder = new PgpSignatureBuilder(
+                key.algorithm, hashAlgorithm, key.fingerprint, creationTime
+        );
+        MessageDigest digest = hashAlgorithm.newDigest();
+        digest.update(data);
+        byte[] hash = builder.finish(digest);
+        Signature signer = Signature.getInstance("NONEwithRSA");
+        signer.initSign(privateKey);
+        signer.update(hashAlgorithm.toDigestInfo(hash));
+        return builder.buildArmored(hash, signer.sign());
+    }
+}